@@ -0,0 +1,29 @@
+package com.github.drapostolos.rdp4j.metrics;
+
+import com.github.drapostolos.rdp4j.AsyncListener;
+
+/**
+ * The queue of an {@link AsyncListener} as a JMX MXBean.
+ */
+public interface AsyncListenerMXBean {
+
+    /**
+     * @return see {@link AsyncListener#getQueueSize()}.
+     */
+    int getQueueSize();
+
+    /**
+     * @return see {@link AsyncListener#getCapacity()}.
+     */
+    int getCapacity();
+
+    /**
+     * @return see {@link AsyncListener#getLagInMillis()}.
+     */
+    long getLagInMillis();
+
+    /**
+     * @return see {@link AsyncListener#getDroppedEventCount()}.
+     */
+    long getDroppedEventCount();
+}
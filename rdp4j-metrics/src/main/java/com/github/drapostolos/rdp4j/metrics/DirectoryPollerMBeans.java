@@ -0,0 +1,390 @@
+package com.github.drapostolos.rdp4j.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.drapostolos.rdp4j.AsyncListener;
+import com.github.drapostolos.rdp4j.DirectoryMetrics;
+import com.github.drapostolos.rdp4j.DirectoryPoller;
+import com.github.drapostolos.rdp4j.PollerMetrics;
+import com.github.drapostolos.rdp4j.PollingThreadPool;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * Registers the {@link PollerMetrics} of a {@link DirectoryPoller} as JMX MXBeans,
+ * in the domain {@value #DOMAIN}:
+ * <ul>
+ * <li>{@code type=DirectoryPoller,name=<thread name>}, see {@link DirectoryPollerMXBean}</li>
+ * <li>{@code type=PolledDirectory,poller=<thread name>,name=<directory>}, for each
+ * directory, see {@link PolledDirectoryMXBean}</li>
+ * <li>{@code type=AsyncListener,poller=<thread name>,name=<name>}, for each
+ * monitored {@link AsyncListener}, see {@link AsyncListenerMXBean}</li>
+ * <li>{@code type=PollingThreadPool,poller=<thread name>}, if the directories are
+ * polled by a {@link PollingThreadPool}, see {@link PollingThreadPoolMXBean}</li>
+ * </ul>
+ * All values are quoted. The MXBeans of directories are registered and unregistered
+ * as directories are added to, and removed from, the {@link DirectoryPoller}.
+ *
+ * <pre>
+ * DirectoryPollerMBeans mbeans = new DirectoryPollerMBeans(dp)
+ *         .monitorAsyncListener("audit", asyncListener);
+ * mbeans.register(ManagementFactory.getPlatformMBeanServer());
+ * </pre>
+ */
+public final class DirectoryPollerMBeans implements AutoCloseable {
+    /**
+     * The JMX domain of the MXBeans.
+     */
+    public static final String DOMAIN = "com.github.drapostolos.rdp4j";
+    private static final Logger LOG = LoggerFactory.getLogger(DirectoryPollerMBeans.class);
+    private static final String NULL_ARGUMENT_ERROR_MESSAGE = "null argument not allowed!";
+    private final MetricsSnapshots snapshots;
+    private final String pollerName;
+    private final Map<String, AsyncListener> asyncListeners = new LinkedHashMap<>();
+    private final List<ObjectName> registered = new ArrayList<>();
+    private MBeanServer server;
+    private DirectoryTracker<ObjectName> tracker;
+
+    /**
+     * @param dp the directory poller to register the MXBeans of.
+     * @throws NullPointerException if the given argument is null.
+     */
+    public DirectoryPollerMBeans(DirectoryPoller dp) {
+        this(new MetricsSnapshots(checkNotNull(dp)));
+    }
+
+    DirectoryPollerMBeans(MetricsSnapshots snapshots) {
+        this.snapshots = snapshots;
+        this.pollerName = ObjectName.quote(snapshots.getDirectoryPoller().getThreadName());
+    }
+
+    /**
+     * Registers an MXBean of the queue of the given listener, added to the
+     * {@link DirectoryPoller}. To be called before {@link #register(MBeanServer)}.
+     *
+     * @param name name of the listener, used in its {@link ObjectName}.
+     * @param listener the listener to monitor.
+     * @return this instance.
+     * @throws NullPointerException if any of the given arguments is null.
+     */
+    public DirectoryPollerMBeans monitorAsyncListener(String name, AsyncListener listener) {
+        asyncListeners.put(checkNotNull(name), checkNotNull(listener));
+        return this;
+    }
+
+    /**
+     * Registers the MXBeans in the given server.
+     *
+     * @param server the server to register the MXBeans in.
+     * @throws JMException if an MXBean of the {@link DirectoryPoller}, or of a
+     *         monitored listener, cannot be registered. Like when already
+     *         registered for another {@link DirectoryPoller} with the same
+     *         thread name.
+     * @throws IllegalStateException if already registered.
+     * @throws NullPointerException if the given argument is null.
+     */
+    public synchronized void register(MBeanServer server) throws JMException {
+        checkNotNull(server);
+        if (this.server != null) {
+            throw new IllegalStateException("MXBeans already registered.");
+        }
+        this.server = server;
+        try {
+            register(new StandardMBean(new Poller(snapshots), DirectoryPollerMXBean.class, true),
+                    "type=DirectoryPoller,name=" + pollerName);
+            for (Entry<String, AsyncListener> entry : asyncListeners.entrySet()) {
+                register(new StandardMBean(new Queue(entry.getValue()), AsyncListenerMXBean.class, true),
+                        "type=AsyncListener,poller=" + pollerName + ",name=" + ObjectName.quote(entry.getKey()));
+            }
+            PollingThreadPool pool = snapshots.getDirectoryPoller().getPollingThreadPool();
+            if (pool != null) {
+                register(new StandardMBean(new Pool(pool), PollingThreadPoolMXBean.class, true),
+                        "type=PollingThreadPool,poller=" + pollerName);
+            }
+        } catch (JMException e) {
+            close();
+            this.server = null;
+            throw e;
+        }
+        tracker = new DirectoryTracker<>(snapshots, this::registerDirectory, this::unregister);
+        tracker.start();
+    }
+
+    private void register(StandardMBean mbean, String properties) throws JMException {
+        ObjectName name = objectName(properties);
+        server.registerMBean(mbean, name);
+        registered.add(name);
+    }
+
+    /*
+     * Called by the polling thread. A directory that cannot be registered, like
+     * one with the same toString() as another directory, is logged and skipped.
+     */
+    private ObjectName registerDirectory(PolledDirectory directory, LatestDirectoryMetrics metrics) {
+        try {
+            ObjectName name = objectName("type=PolledDirectory,poller=" + pollerName
+                    + ",name=" + ObjectName.quote(directory.toString()));
+            server.registerMBean(new StandardMBean(new Directory(metrics), PolledDirectoryMXBean.class, true), name);
+            return name;
+        } catch (JMException e) {
+            LOG.warn("Unable to register MXBean of directory: " + directory, e);
+            return null;
+        }
+    }
+
+    private void unregister(ObjectName name) {
+        if (name == null) {
+            return;
+        }
+        try {
+            server.unregisterMBean(name);
+        } catch (JMException e) {
+            LOG.warn("Unable to unregister MXBean: " + name, e);
+        }
+    }
+
+    private static ObjectName objectName(String properties) throws MalformedObjectNameException {
+        return new ObjectName(DOMAIN + ":" + properties);
+    }
+
+    /**
+     * Unregisters all MXBeans, and stops registering the MXBeans of directories.
+     */
+    @Override
+    public synchronized void close() {
+        if (tracker != null) {
+            tracker.close();
+            tracker = null;
+        }
+        registered.forEach(this::unregister);
+        registered.clear();
+    }
+
+    private static <T> T checkNotNull(T argument) {
+        if (argument == null) {
+            throw new NullPointerException(NULL_ARGUMENT_ERROR_MESSAGE);
+        }
+        return argument;
+    }
+
+    private static final class Poller implements DirectoryPollerMXBean {
+        private final MetricsSnapshots snapshots;
+
+        private Poller(MetricsSnapshots snapshots) {
+            this.snapshots = snapshots;
+        }
+
+        @Override
+        public long getPollCycleCount() {
+            return snapshots.get().getPollCycleCount();
+        }
+
+        @Override
+        public long getLastPollCycleNanos() {
+            return snapshots.get().getLastPollCycleNanos();
+        }
+
+        @Override
+        public long getMaxPollCycleNanos() {
+            return snapshots.get().getMaxPollCycleNanos();
+        }
+
+        @Override
+        public long getListenerErrorCount() {
+            return snapshots.get().getListenerErrorCount();
+        }
+
+        @Override
+        public int getDirectoryCount() {
+            return snapshots.get().getDirectoryMetrics().size();
+        }
+
+        @Override
+        public int getIoErrorDirectoryCount() {
+            return (int) snapshots.get().getDirectoryMetrics().values().stream()
+                    .filter(DirectoryMetrics::isIoErrorActive)
+                    .count();
+        }
+
+        @Override
+        public long getTrackedFileCount() {
+            return snapshots.get().getTrackedFileCount();
+        }
+    }
+
+    private static final class Directory implements PolledDirectoryMXBean {
+        private final LatestDirectoryMetrics metrics;
+
+        private Directory(LatestDirectoryMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public long getPollCount() {
+            return metrics.get().getPollCount();
+        }
+
+        @Override
+        public long getSkippedListingCount() {
+            return metrics.get().getSkippedListingCount();
+        }
+
+        @Override
+        public long getListingCount() {
+            return metrics.get().getListingCount();
+        }
+
+        @Override
+        public long getLastPollNanos() {
+            return metrics.get().getLastPollNanos();
+        }
+
+        @Override
+        public long getMaxPollNanos() {
+            return metrics.get().getMaxPollNanos();
+        }
+
+        @Override
+        public long getTotalPollNanos() {
+            return metrics.get().getTotalPollNanos();
+        }
+
+        @Override
+        public long getLastListingNanos() {
+            return metrics.get().getLastListingNanos();
+        }
+
+        @Override
+        public long getTotalListingNanos() {
+            return metrics.get().getTotalListingNanos();
+        }
+
+        @Override
+        public long getLastLookupNanos() {
+            return metrics.get().getLastLookupNanos();
+        }
+
+        @Override
+        public long getTotalLookupNanos() {
+            return metrics.get().getTotalLookupNanos();
+        }
+
+        @Override
+        public long getLastListenerNanos() {
+            return metrics.get().getLastListenerNanos();
+        }
+
+        @Override
+        public long getTotalListenerNanos() {
+            return metrics.get().getTotalListenerNanos();
+        }
+
+        @Override
+        public int getLastEntryCount() {
+            return metrics.get().getLastEntryCount();
+        }
+
+        @Override
+        public int getLastFilteredOutCount() {
+            return metrics.get().getLastFilteredOutCount();
+        }
+
+        @Override
+        public int getTrackedFileCount() {
+            return metrics.get().getTrackedFileCount();
+        }
+
+        @Override
+        public long getTotalAddedCount() {
+            return metrics.get().getTotalAddedCount();
+        }
+
+        @Override
+        public long getTotalRemovedCount() {
+            return metrics.get().getTotalRemovedCount();
+        }
+
+        @Override
+        public long getTotalModifiedCount() {
+            return metrics.get().getTotalModifiedCount();
+        }
+
+        @Override
+        public long getIoErrorCount() {
+            return metrics.get().getIoErrorCount();
+        }
+
+        @Override
+        public long getRecoverableErrorCount() {
+            return metrics.get().getRecoverableErrorCount();
+        }
+
+        @Override
+        public boolean isIoErrorActive() {
+            return metrics.get().isIoErrorActive();
+        }
+    }
+
+    private static final class Pool implements PollingThreadPoolMXBean {
+        private final PollingThreadPool pool;
+
+        private Pool(PollingThreadPool pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public int getParallelism() {
+            return pool.getParallelism();
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return pool.getQueueDepth();
+        }
+
+        @Override
+        public int getActiveCount() {
+            return pool.getActiveCount();
+        }
+    }
+
+    private static final class Queue implements AsyncListenerMXBean {
+        private final AsyncListener listener;
+
+        private Queue(AsyncListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public int getQueueSize() {
+            return listener.getQueueSize();
+        }
+
+        @Override
+        public int getCapacity() {
+            return listener.getCapacity();
+        }
+
+        @Override
+        public long getLagInMillis() {
+            return listener.getLagInMillis();
+        }
+
+        @Override
+        public long getDroppedEventCount() {
+            return listener.getDroppedEventCount();
+        }
+    }
+}
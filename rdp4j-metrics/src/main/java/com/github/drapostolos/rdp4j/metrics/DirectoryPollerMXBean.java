@@ -0,0 +1,46 @@
+package com.github.drapostolos.rdp4j.metrics;
+
+import com.github.drapostolos.rdp4j.DirectoryPoller;
+import com.github.drapostolos.rdp4j.PollerMetrics;
+
+/**
+ * The totals of a {@link DirectoryPoller} as a JMX MXBean, see
+ * {@link PollerMetrics}. Times are in nanoseconds.
+ */
+public interface DirectoryPollerMXBean {
+
+    /**
+     * @return the number of poll-cycles run.
+     */
+    long getPollCycleCount();
+
+    /**
+     * @return the time of the last poll-cycle.
+     */
+    long getLastPollCycleNanos();
+
+    /**
+     * @return the time of the slowest poll-cycle.
+     */
+    long getMaxPollCycleNanos();
+
+    /**
+     * @return the number of exceptions thrown by listeners.
+     */
+    long getListenerErrorCount();
+
+    /**
+     * @return the number of polled directories.
+     */
+    int getDirectoryCount();
+
+    /**
+     * @return the number of directories with a raised IO error.
+     */
+    int getIoErrorDirectoryCount();
+
+    /**
+     * @return the number of files kept as the state of all directories.
+     */
+    long getTrackedFileCount();
+}
@@ -0,0 +1,276 @@
+package com.github.drapostolos.rdp4j.metrics;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import com.github.drapostolos.rdp4j.AsyncListener;
+import com.github.drapostolos.rdp4j.DirectoryMetrics;
+import com.github.drapostolos.rdp4j.DirectoryPoller;
+import com.github.drapostolos.rdp4j.PollerMetrics;
+import com.github.drapostolos.rdp4j.PollingThreadPool;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the {@link PollerMetrics} of a {@link DirectoryPoller} as Micrometer
+ * meters, tagged with the thread name of the poller ({@code poller}):
+ * <ul>
+ * <li>poll-cycles: {@code rdp4j.poll.cycles}, {@code rdp4j.poll.cycle.last},
+ * {@code rdp4j.poll.cycle.max}</li>
+ * <li>totals: {@code rdp4j.directories}, {@code rdp4j.directories.io.error},
+ * {@code rdp4j.files.tracked}, {@code rdp4j.listener.errors}</li>
+ * <li>each directory, tagged with its {@code toString()} ({@code directory}):
+ * {@code rdp4j.directory.*} timers of the poll, listing and lookup times, counted
+ * per poll and per listing respectively, a counter of the seconds spent notifying
+ * listeners, gauges of the listed, filtered out and tracked files, counters of the
+ * added, removed and modified files, and the IO error state and count, as fired
+ * in {@link com.github.drapostolos.rdp4j.IoErrorRaisedEvent}s and
+ * {@link com.github.drapostolos.rdp4j.IoErrorCeasedEvent}s</li>
+ * <li>each monitored {@link AsyncListener}, tagged with its given name
+ * ({@code listener}): {@code rdp4j.listener.queue.size},
+ * {@code rdp4j.listener.queue.lag}, {@code rdp4j.listener.events.dropped}</li>
+ * <li>the {@link PollingThreadPool} polling the directories, if any:
+ * {@code rdp4j.pool.queue.depth}, {@code rdp4j.pool.active},
+ * {@code rdp4j.pool.parallelism}</li>
+ * </ul>
+ * Meters are added and removed as directories are added to, and removed from, the
+ * {@link DirectoryPoller}. All meters read the same snapshot of the metrics, taken
+ * at most once a second.
+ *
+ * <pre>
+ * new DirectoryPollerMeterBinder(dp)
+ *         .monitorAsyncListener("audit", asyncListener)
+ *         .bindTo(registry);
+ * </pre>
+ */
+public final class DirectoryPollerMeterBinder implements MeterBinder, AutoCloseable {
+    private static final String NULL_ARGUMENT_ERROR_MESSAGE = "null argument not allowed!";
+    private final MetricsSnapshots snapshots;
+    private final Tags tags;
+    private final Map<String, AsyncListener> asyncListeners = new LinkedHashMap<>();
+    private final List<DirectoryTracker<DirectoryMeters>> trackers = new ArrayList<>();
+
+    /**
+     * @param dp the directory poller to publish the metrics of.
+     * @throws NullPointerException if the given argument is null.
+     */
+    public DirectoryPollerMeterBinder(DirectoryPoller dp) {
+        this(dp, Tags.empty());
+    }
+
+    /**
+     * @param dp the directory poller to publish the metrics of.
+     * @param tags additional tags of all meters.
+     * @throws NullPointerException if any of the given arguments is null.
+     */
+    public DirectoryPollerMeterBinder(DirectoryPoller dp, Iterable<Tag> tags) {
+        this(new MetricsSnapshots(checkNotNull(dp)), tags);
+    }
+
+    DirectoryPollerMeterBinder(MetricsSnapshots snapshots, Iterable<Tag> tags) {
+        this.snapshots = snapshots;
+        this.tags = Tags.concat(checkNotNull(tags), "poller", snapshots.getDirectoryPoller().getThreadName());
+    }
+
+    /**
+     * Publishes the queue size, lag and dropped events of the given listener,
+     * added to the {@link DirectoryPoller}. To be called before
+     * {@link #bindTo(MeterRegistry)}.
+     *
+     * @param name name of the listener, used as tag.
+     * @param listener the listener to monitor.
+     * @return this instance.
+     * @throws NullPointerException if any of the given arguments is null.
+     */
+    public DirectoryPollerMeterBinder monitorAsyncListener(String name, AsyncListener listener) {
+        asyncListeners.put(checkNotNull(name), checkNotNull(listener));
+        return this;
+    }
+
+    @Override
+    public synchronized void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("rdp4j.poll.cycles", snapshots, s -> s.get().getPollCycleCount())
+                .tags(tags).description("Poll-cycles run").register(registry);
+        TimeGauge.builder("rdp4j.poll.cycle.last", snapshots, NANOSECONDS, s -> s.get().getLastPollCycleNanos())
+                .tags(tags).description("Time of the last poll-cycle").register(registry);
+        TimeGauge.builder("rdp4j.poll.cycle.max", snapshots, NANOSECONDS, s -> s.get().getMaxPollCycleNanos())
+                .tags(tags).description("Time of the slowest poll-cycle").register(registry);
+        FunctionCounter.builder("rdp4j.listener.errors", snapshots, s -> s.get().getListenerErrorCount())
+                .tags(tags).description("Exceptions thrown by listeners").register(registry);
+        Gauge.builder("rdp4j.directories", snapshots, s -> s.get().getDirectoryMetrics().size())
+                .tags(tags).description("Polled directories").register(registry);
+        Gauge.builder("rdp4j.directories.io.error", snapshots, DirectoryPollerMeterBinder::countIoErrors)
+                .tags(tags).description("Directories with a raised IO error").register(registry);
+        Gauge.builder("rdp4j.files.tracked", snapshots, s -> s.get().getTrackedFileCount())
+                .tags(tags).description("Files kept as the state of all directories").register(registry);
+        for (Entry<String, AsyncListener> entry : asyncListeners.entrySet()) {
+            bindAsyncListener(registry, Tags.concat(tags, "listener", entry.getKey()), entry.getValue());
+        }
+        PollingThreadPool pool = snapshots.getDirectoryPoller().getPollingThreadPool();
+        if (pool != null) {
+            bindPollingThreadPool(registry, pool);
+        }
+        DirectoryTracker<DirectoryMeters> tracker = new DirectoryTracker<>(snapshots,
+                (directory, metrics) -> bindDirectory(registry, directory, metrics),
+                meters -> meters.removeFrom(registry));
+        trackers.add(tracker);
+        tracker.start();
+    }
+
+    private static double countIoErrors(MetricsSnapshots snapshots) {
+        return snapshots.get().getDirectoryMetrics().values().stream()
+                .filter(DirectoryMetrics::isIoErrorActive)
+                .count();
+    }
+
+    private static void bindAsyncListener(MeterRegistry registry, Tags tags, AsyncListener listener) {
+        Gauge.builder("rdp4j.listener.queue.size", listener, AsyncListener::getQueueSize)
+                .tags(tags).description("Events waiting to be delivered").register(registry);
+        TimeGauge.builder("rdp4j.listener.queue.lag", listener, MILLISECONDS, AsyncListener::getLagInMillis)
+                .tags(tags).description("Age of the oldest queued event").register(registry);
+        FunctionCounter.builder("rdp4j.listener.events.dropped", listener, AsyncListener::getDroppedEventCount)
+                .tags(tags).description("Events dropped or coalesced").register(registry);
+    }
+
+    private void bindPollingThreadPool(MeterRegistry registry, PollingThreadPool pool) {
+        Gauge.builder("rdp4j.pool.queue.depth", pool, PollingThreadPool::getQueueDepth)
+                .tags(tags).description("Directories waiting for a free polling thread").register(registry);
+        Gauge.builder("rdp4j.pool.active", pool, PollingThreadPool::getActiveCount)
+                .tags(tags).description("Directories being polled").register(registry);
+        Gauge.builder("rdp4j.pool.parallelism", pool, PollingThreadPool::getParallelism)
+                .tags(tags).description("Maximum number of directories polled at the same time")
+                .register(registry);
+    }
+
+    private DirectoryMeters bindDirectory(MeterRegistry registry, PolledDirectory directory,
+            LatestDirectoryMetrics metrics) {
+        DirectoryMeters meters = new DirectoryMeters(metrics, Tags.concat(tags, "directory", directory.toString()));
+        meters.timer(registry, "rdp4j.directory.poll", DirectoryMetrics::getPollCount,
+                DirectoryMetrics::getTotalPollNanos, "Polls");
+        meters.timeGauge(registry, "rdp4j.directory.poll.last", DirectoryMetrics::getLastPollNanos,
+                "Time of the last poll");
+        meters.timeGauge(registry, "rdp4j.directory.poll.max", DirectoryMetrics::getMaxPollNanos,
+                "Time of the slowest poll");
+        meters.timer(registry, "rdp4j.directory.listing", DirectoryMetrics::getListingCount,
+                DirectoryMetrics::getTotalListingNanos, "Listings of the directory");
+        meters.timeGauge(registry, "rdp4j.directory.listing.last", DirectoryMetrics::getLastListingNanos,
+                "Listing time of the last poll");
+        meters.timer(registry, "rdp4j.directory.lookup", DirectoryMetrics::getListingCount,
+                DirectoryMetrics::getTotalLookupNanos,
+                "Time spent filtering files and looking up last modified times, per listing");
+        meters.timeGauge(registry, "rdp4j.directory.lookup.last", DirectoryMetrics::getLastLookupNanos,
+                "Lookup time of the last poll");
+        // Listeners are not notified in every poll, so there is no count to average over.
+        meters.timeCounter(registry, "rdp4j.directory.listener", DirectoryMetrics::getTotalListenerNanos,
+                "Time spent notifying listeners");
+        meters.timeGauge(registry, "rdp4j.directory.listener.last", DirectoryMetrics::getLastListenerNanos,
+                "Listener time of the last poll");
+        meters.counter(registry, "rdp4j.directory.listings.skipped", DirectoryMetrics::getSkippedListingCount,
+                "Polls not listing the directory, as its change token was unchanged");
+        meters.gauge(registry, "rdp4j.directory.files.listed", DirectoryMetrics::getLastEntryCount,
+                "Files in the last listing, before filtering");
+        meters.gauge(registry, "rdp4j.directory.files.filtered", DirectoryMetrics::getLastFilteredOutCount,
+                "Files rejected by the file filter in the last listing");
+        meters.gauge(registry, "rdp4j.directory.files.tracked", DirectoryMetrics::getTrackedFileCount,
+                "Files kept as the state of the directory");
+        meters.counter(registry, "rdp4j.directory.files.added", DirectoryMetrics::getTotalAddedCount,
+                "Files found added");
+        meters.counter(registry, "rdp4j.directory.files.removed", DirectoryMetrics::getTotalRemovedCount,
+                "Files found removed");
+        meters.counter(registry, "rdp4j.directory.files.modified", DirectoryMetrics::getTotalModifiedCount,
+                "Files found modified");
+        meters.counter(registry, "rdp4j.directory.io.errors", DirectoryMetrics::getIoErrorCount,
+                "IO errors raised");
+        meters.gauge(registry, "rdp4j.directory.io.error", m -> m.isIoErrorActive() ? 1 : 0,
+                "1 while an IO error is raised, otherwise 0");
+        meters.counter(registry, "rdp4j.directory.errors.recoverable", DirectoryMetrics::getRecoverableErrorCount,
+                "Polls skipped due to a DirectoryPollerException");
+        return meters;
+    }
+
+    /**
+     * Stops adding and removing the meters of directories, and removes the meters
+     * of all directories from the registries bound to.
+     */
+    @Override
+    public synchronized void close() {
+        trackers.forEach(DirectoryTracker::close);
+        trackers.clear();
+    }
+
+    private static <T> T checkNotNull(T argument) {
+        if (argument == null) {
+            throw new NullPointerException(NULL_ARGUMENT_ERROR_MESSAGE);
+        }
+        return argument;
+    }
+
+    /*
+     * The meters of a directory. Meters keep a weak reference to the object they
+     * measure, so it is kept here, as long as the meters are registered.
+     */
+    private static final class DirectoryMeters {
+        private final LatestDirectoryMetrics metrics;
+        private final Tags tags;
+        private final List<Meter> meters = new ArrayList<>();
+
+        private DirectoryMeters(LatestDirectoryMetrics metrics, Tags tags) {
+            this.metrics = metrics;
+            this.tags = tags;
+        }
+
+        private void timer(MeterRegistry registry, String name, ToLongFunction<DirectoryMetrics> count,
+                ToDoubleFunction<DirectoryMetrics> totalNanos, String description) {
+            meters.add(FunctionTimer.builder(name, metrics, m -> count.applyAsLong(m.get()),
+                    m -> totalNanos.applyAsDouble(m.get()), NANOSECONDS)
+                    .tags(tags).description(description).register(registry));
+        }
+
+        private void timeCounter(MeterRegistry registry, String name, ToDoubleFunction<DirectoryMetrics> totalNanos,
+                String description) {
+            meters.add(FunctionCounter.builder(name, metrics,
+                    m -> totalNanos.applyAsDouble(m.get()) / SECONDS.toNanos(1))
+                    .baseUnit("seconds").tags(tags).description(description).register(registry));
+        }
+
+        private void timeGauge(MeterRegistry registry, String name, ToDoubleFunction<DirectoryMetrics> nanos,
+                String description) {
+            meters.add(TimeGauge.builder(name, metrics, NANOSECONDS, m -> nanos.applyAsDouble(m.get()))
+                    .tags(tags).description(description).register(registry));
+        }
+
+        private void gauge(MeterRegistry registry, String name, ToDoubleFunction<DirectoryMetrics> value,
+                String description) {
+            meters.add(Gauge.builder(name, metrics, m -> value.applyAsDouble(m.get()))
+                    .tags(tags).description(description).register(registry));
+        }
+
+        private void counter(MeterRegistry registry, String name, ToLongFunction<DirectoryMetrics> count,
+                String description) {
+            meters.add(FunctionCounter.builder(name, metrics, m -> count.applyAsLong(m.get()))
+                    .tags(tags).description(description).register(registry));
+        }
+
+        private void removeFrom(MeterRegistry registry) {
+            meters.forEach(registry::remove);
+        }
+    }
+}
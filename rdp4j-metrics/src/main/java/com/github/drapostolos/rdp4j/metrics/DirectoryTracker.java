@@ -0,0 +1,87 @@
+package com.github.drapostolos.rdp4j.metrics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+import com.github.drapostolos.rdp4j.AfterPollingCycleEvent;
+import com.github.drapostolos.rdp4j.BeforePollingCycleEvent;
+import com.github.drapostolos.rdp4j.DirectoryMetrics;
+import com.github.drapostolos.rdp4j.DirectoryPoller;
+import com.github.drapostolos.rdp4j.PollCycleListener;
+import com.github.drapostolos.rdp4j.PollerMetrics;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * Keeps one registration, like the meters or the MBean of a directory, for each
+ * directory of a {@link DirectoryPoller}. Directories added to, or removed from,
+ * the running {@link DirectoryPoller} are found after a poll-cycle, at most once
+ * per snapshot, see {@link MetricsSnapshots}.
+ * <p>
+ * Only listens to poll-cycles, so the poller does not create file events for it.
+ */
+final class DirectoryTracker<T> implements PollCycleListener {
+    private final MetricsSnapshots snapshots;
+    private final BiFunction<PolledDirectory, LatestDirectoryMetrics, T> register;
+    private final Consumer<T> unregister;
+    private final Map<PolledDirectory, T> registered = new HashMap<>();
+    private PollerMetrics lastSynced;
+    private boolean isClosed = false;
+
+    DirectoryTracker(MetricsSnapshots snapshots, BiFunction<PolledDirectory, LatestDirectoryMetrics, T> register,
+            Consumer<T> unregister) {
+        this.snapshots = snapshots;
+        this.register = register;
+        this.unregister = unregister;
+    }
+
+    void start() {
+        sync();
+        snapshots.getDirectoryPoller().addListener(this);
+    }
+
+    @Override
+    public void beforePollingCycle(BeforePollingCycleEvent event) {
+        // nothing to do.
+    }
+
+    @Override
+    public void afterPollingCycle(AfterPollingCycleEvent event) {
+        sync();
+    }
+
+    synchronized void sync() {
+        PollerMetrics metrics = snapshots.get();
+        if (isClosed || metrics == lastSynced) {
+            return;
+        }
+        lastSynced = metrics;
+        for (DirectoryMetrics directory : metrics.getDirectoryMetrics().values()) {
+            PolledDirectory polledDirectory = directory.getPolledDirectory();
+            if (!registered.containsKey(polledDirectory)) {
+                T registration = register.apply(polledDirectory, new LatestDirectoryMetrics(snapshots, directory));
+                registered.put(polledDirectory, registration);
+            }
+        }
+        for (Entry<PolledDirectory, T> entry : new ArrayList<>(registered.entrySet())) {
+            if (!metrics.getDirectoryMetrics().containsKey(entry.getKey())) {
+                unregister.accept(entry.getValue());
+                registered.remove(entry.getKey());
+            }
+        }
+    }
+
+    synchronized void close() {
+        snapshots.getDirectoryPoller().removeListener(this);
+        registered.values().forEach(unregister);
+        registered.clear();
+        isClosed = true;
+    }
+
+    synchronized int size() {
+        return registered.size();
+    }
+}
@@ -0,0 +1,28 @@
+package com.github.drapostolos.rdp4j.metrics;
+
+import com.github.drapostolos.rdp4j.DirectoryMetrics;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * The latest {@link DirectoryMetrics} of a single directory. Keeps the last seen
+ * metrics once the directory is removed, until its meters are removed too.
+ */
+final class LatestDirectoryMetrics {
+    private final MetricsSnapshots snapshots;
+    private final PolledDirectory directory;
+    private volatile DirectoryMetrics last;
+
+    LatestDirectoryMetrics(MetricsSnapshots snapshots, DirectoryMetrics initial) {
+        this.snapshots = snapshots;
+        this.directory = initial.getPolledDirectory();
+        this.last = initial;
+    }
+
+    DirectoryMetrics get() {
+        DirectoryMetrics metrics = snapshots.get().getDirectoryMetrics(directory);
+        if (metrics != null) {
+            last = metrics;
+        }
+        return last;
+    }
+}
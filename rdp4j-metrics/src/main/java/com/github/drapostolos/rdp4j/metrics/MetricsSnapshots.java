@@ -0,0 +1,42 @@
+package com.github.drapostolos.rdp4j.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.drapostolos.rdp4j.DirectoryPoller;
+import com.github.drapostolos.rdp4j.PollerMetrics;
+
+/**
+ * Hands out the {@link PollerMetrics} of a {@link DirectoryPoller}, taking a new
+ * snapshot at most once per max age. A snapshot covers all directories, so the
+ * meters of thousands of directories read one snapshot per scrape instead of one
+ * each.
+ */
+final class MetricsSnapshots {
+    static final long DEFAULT_MAX_AGE_MILLIS = 1000;
+    private final DirectoryPoller dp;
+    private final long maxAgeNanos;
+    private PollerMetrics metrics;
+    private long takenAtNanos;
+
+    MetricsSnapshots(DirectoryPoller dp) {
+        this(dp, DEFAULT_MAX_AGE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    MetricsSnapshots(DirectoryPoller dp, long maxAge, TimeUnit timeUnit) {
+        this.dp = dp;
+        this.maxAgeNanos = timeUnit.toNanos(maxAge);
+    }
+
+    synchronized PollerMetrics get() {
+        long now = System.nanoTime();
+        if (metrics == null || now - takenAtNanos >= maxAgeNanos) {
+            metrics = dp.getMetrics();
+            takenAtNanos = now;
+        }
+        return metrics;
+    }
+
+    DirectoryPoller getDirectoryPoller() {
+        return dp;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.drapostolos.rdp4j.metrics;
+
+import com.github.drapostolos.rdp4j.DirectoryMetrics;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * The measurements of a single {@link PolledDirectory} as a JMX MXBean, see
+ * {@link DirectoryMetrics} for the meaning of each attribute. Times are in
+ * nanoseconds.
+ */
+public interface PolledDirectoryMXBean {
+
+    long getPollCount();
+
+    long getSkippedListingCount();
+
+    long getListingCount();
+
+    long getLastPollNanos();
+
+    long getMaxPollNanos();
+
+    long getTotalPollNanos();
+
+    long getLastListingNanos();
+
+    long getTotalListingNanos();
+
+    long getLastLookupNanos();
+
+    long getTotalLookupNanos();
+
+    long getLastListenerNanos();
+
+    long getTotalListenerNanos();
+
+    int getLastEntryCount();
+
+    int getLastFilteredOutCount();
+
+    int getTrackedFileCount();
+
+    long getTotalAddedCount();
+
+    long getTotalRemovedCount();
+
+    long getTotalModifiedCount();
+
+    long getIoErrorCount();
+
+    long getRecoverableErrorCount();
+
+    boolean isIoErrorActive();
+}
@@ -0,0 +1,25 @@
+package com.github.drapostolos.rdp4j.metrics;
+
+import com.github.drapostolos.rdp4j.PollingThreadPool;
+
+/**
+ * The {@link PollingThreadPool} of a {@link com.github.drapostolos.rdp4j.DirectoryPoller}
+ * as a JMX MXBean.
+ */
+public interface PollingThreadPoolMXBean {
+
+    /**
+     * @return see {@link PollingThreadPool#getParallelism()}.
+     */
+    int getParallelism();
+
+    /**
+     * @return see {@link PollingThreadPool#getQueueDepth()}.
+     */
+    int getQueueDepth();
+
+    /**
+     * @return see {@link PollingThreadPool#getActiveCount()}.
+     */
+    int getActiveCount();
+}
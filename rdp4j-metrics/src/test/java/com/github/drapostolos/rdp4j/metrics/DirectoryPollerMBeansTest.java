@@ -0,0 +1,113 @@
+package com.github.drapostolos.rdp4j.metrics;
+
+import static com.github.drapostolos.rdp4j.metrics.DirectoryPollerMeterBinderTest.awaitUntil;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.drapostolos.rdp4j.DirectoryPoller;
+import com.github.drapostolos.rdp4j.PollingThreadPool;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+public class DirectoryPollerMBeansTest {
+
+    private PolledDirectory directory;
+    private DirectoryPoller dp;
+    private MBeanServer server;
+    private DirectoryPollerMBeans mbeans;
+
+    @Before
+    public void testFixture() throws Exception {
+        directory = Mockito.mock(PolledDirectory.class);
+        Mockito.when(directory.listFiles()).thenReturn(new HashSet<>());
+        dp = DirectoryPoller.newBuilder()
+                .addPolledDirectory(directory)
+                .setPollingInterval(1, TimeUnit.MILLISECONDS)
+                .start();
+        server = MBeanServerFactory.newMBeanServer();
+        mbeans = new DirectoryPollerMBeans(new MetricsSnapshots(dp, 0, TimeUnit.MILLISECONDS));
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        mbeans.close();
+        dp.stop();
+    }
+
+    @Test
+    public void shouldRegisterMXBeansOfPollerAndOfEachDirectory() throws Exception {
+        // given
+        ObjectName directoryName = new ObjectName(DirectoryPollerMBeans.DOMAIN + ":type=PolledDirectory,poller="
+                + ObjectName.quote(dp.getThreadName()) + ",name=" + ObjectName.quote(directory.toString()));
+
+        // when
+        mbeans.register(server);
+
+        // then
+        awaitUntil(() -> pollCountOf(directoryName) >= 1);
+        ObjectName pollerName = new ObjectName(DirectoryPollerMBeans.DOMAIN + ":type=DirectoryPoller,name="
+                + ObjectName.quote(dp.getThreadName()));
+        assertThat(server.getAttribute(pollerName, "DirectoryCount")).isEqualTo(1);
+        assertThat(server.getAttribute(directoryName, "IoErrorActive")).isEqualTo(false);
+    }
+
+    @Test
+    public void shouldRegisterMXBeanOfPollingThreadPool() throws Exception {
+        // given
+        PollingThreadPool pool = new PollingThreadPool(3);
+        DirectoryPoller pooled = DirectoryPoller.newBuilder()
+                .addPolledDirectory(directory)
+                .enableParallelPollingOfDirectories(pool)
+                .start();
+        DirectoryPollerMBeans pooledMBeans = new DirectoryPollerMBeans(pooled);
+
+        // when
+        pooledMBeans.register(server);
+
+        // then
+        ObjectName poolName = new ObjectName(DirectoryPollerMBeans.DOMAIN + ":type=PollingThreadPool,poller="
+                + ObjectName.quote(pooled.getThreadName()));
+        assertThat(server.getAttribute(poolName, "Parallelism")).isEqualTo(3);
+        assertThat(server.getAttribute(poolName, "QueueDepth")).isEqualTo(0);
+        pooledMBeans.close();
+        pooled.stop();
+        pool.shutdown();
+    }
+
+    @Test
+    public void shouldUnregisterAllMXBeansWhenClosed() throws Exception {
+        // given
+        mbeans.register(server);
+
+        // when
+        mbeans.close();
+
+        // then
+        assertThat(server.queryNames(new ObjectName(DirectoryPollerMBeans.DOMAIN + ":*"), null)).isEmpty();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenRegisteredTwice() throws Exception {
+        mbeans.register(server);
+        mbeans.register(server);
+    }
+
+    private long pollCountOf(ObjectName name) {
+        try {
+            return (Long) server.getAttribute(name, "PollCount");
+        } catch (JMException e) {
+            return -1;
+        }
+    }
+}
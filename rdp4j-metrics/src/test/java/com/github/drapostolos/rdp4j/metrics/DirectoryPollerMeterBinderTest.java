@@ -0,0 +1,139 @@
+package com.github.drapostolos.rdp4j.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.drapostolos.rdp4j.AbstractRdp4jListener;
+import com.github.drapostolos.rdp4j.AsyncListener;
+import com.github.drapostolos.rdp4j.AsyncListener.OverflowPolicy;
+import com.github.drapostolos.rdp4j.DirectoryPoller;
+import com.github.drapostolos.rdp4j.PollingThreadPool;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class DirectoryPollerMeterBinderTest {
+
+    private PolledDirectory directoryA;
+    private PolledDirectory directoryB;
+    private AsyncListener asyncListener;
+    private DirectoryPoller dp;
+    private SimpleMeterRegistry registry;
+    private DirectoryPollerMeterBinder binder;
+
+    @Before
+    public void testFixture() throws Exception {
+        directoryA = Mockito.mock(PolledDirectory.class);
+        directoryB = Mockito.mock(PolledDirectory.class);
+        Mockito.when(directoryA.listFiles()).thenReturn(new HashSet<>());
+        Mockito.when(directoryB.listFiles()).thenReturn(new HashSet<>());
+        asyncListener = new AsyncListener(new AbstractRdp4jListener() {}, 10, OverflowPolicy.BLOCK);
+        dp = DirectoryPoller.newBuilder()
+                .addPolledDirectory(directoryA)
+                .addPolledDirectory(directoryB)
+                .addListener(asyncListener)
+                .setPollingInterval(1, TimeUnit.MILLISECONDS)
+                .start();
+        registry = new SimpleMeterRegistry();
+        binder = new DirectoryPollerMeterBinder(new MetricsSnapshots(dp, 0, TimeUnit.MILLISECONDS),
+                Tags.of("app", "test"));
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        binder.close();
+        dp.stop();
+    }
+
+    @Test
+    public void shouldPublishMetersOfPollerAndOfEachDirectory() throws Exception {
+        // given
+        awaitUntil(() -> dp.getMetrics().getPollCycleCount() >= 2);
+
+        // when
+        binder.monitorAsyncListener("async", asyncListener).bindTo(registry);
+
+        // then
+        String poller = dp.getThreadName();
+        assertThat(registry.get("rdp4j.poll.cycles").tags("app", "test", "poller", poller)
+                .functionCounter().count()).isGreaterThanOrEqualTo(2);
+        assertThat(registry.get("rdp4j.directories").gauge().value()).isEqualTo(2);
+        assertThat(registry.get("rdp4j.directory.poll").tag("directory", directoryA.toString())
+                .functionTimer().count()).isGreaterThanOrEqualTo(1);
+        assertThat(registry.get("rdp4j.directory.listing").tag("directory", directoryA.toString())
+                .functionTimer().count()).isGreaterThanOrEqualTo(1);
+        assertThat(registry.get("rdp4j.directory.listener").tag("directory", directoryA.toString())
+                .functionCounter().getId().getBaseUnit()).isEqualTo("seconds");
+        assertThat(registry.get("rdp4j.directory.io.error").tag("directory", directoryB.toString())
+                .gauge().value()).isZero();
+        // polled every millisecond, so the queue need not be empty.
+        assertThat(registry.get("rdp4j.listener.queue.size").tag("listener", "async").gauge()).isNotNull();
+    }
+
+    @Test
+    public void shouldRemoveMetersOfRemovedDirectory() throws Exception {
+        // given
+        binder.bindTo(registry);
+
+        // when
+        dp.removePolledDirectory(directoryB);
+
+        // then
+        awaitUntil(() -> registry.find("rdp4j.directory.poll").tag("directory", directoryB.toString())
+                .functionTimer() == null);
+        assertThat(registry.find("rdp4j.directory.poll").tag("directory", directoryA.toString())
+                .functionTimer()).isNotNull();
+    }
+
+    @Test
+    public void shouldRemoveMetersOfAllDirectoriesWhenClosed() throws Exception {
+        // given
+        binder.bindTo(registry);
+
+        // when
+        binder.close();
+
+        // then
+        assertThat(registry.find("rdp4j.directory.poll").meters()).isEmpty();
+        assertThat(registry.find("rdp4j.poll.cycles").meters()).hasSize(1);
+    }
+
+    @Test
+    public void shouldPublishMetersOfPollingThreadPool() throws Exception {
+        // given
+        PollingThreadPool pool = new PollingThreadPool(3);
+        DirectoryPoller pooled = DirectoryPoller.newBuilder()
+                .addPolledDirectory(directoryA)
+                .enableParallelPollingOfDirectories(pool)
+                .start();
+
+        // when
+        new DirectoryPollerMeterBinder(pooled).bindTo(registry);
+
+        // then
+        String poller = pooled.getThreadName();
+        assertThat(registry.get("rdp4j.pool.parallelism").tag("poller", poller).gauge().value()).isEqualTo(3);
+        assertThat(registry.get("rdp4j.pool.queue.depth").tag("poller", poller).gauge().value()).isZero();
+        assertThat(registry.get("rdp4j.pool.active").tag("poller", poller).gauge()).isNotNull();
+        assertThat(registry.find("rdp4j.pool.parallelism").tag("poller", dp.getThreadName()).gauge()).isNull();
+        pooled.stop();
+        pool.shutdown();
+    }
+
+    static void awaitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("condition not met in time").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.github.drapostolos.rdp4j;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Measures one poll-cycle of a single {@link Poller}, i.e. listing, filtering,
+ * diffing against the previous listing and updating the previous listing.
+ * <p>
+ * Run with: {@code ./gradlew jmh}. The GC profiler is enabled in build.gradle,
+ * so {@code gc.alloc.rate.norm} reports the bytes allocated per poll-cycle.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class PollerBenchmark {
+
+    @Param({ "10000", "100000", "1000000" })
+    int numberOfFiles;
+
+    @Param({ "0", "1", "50" })
+    int churnPercent;
+
+    private SyntheticDirectory directory;
+    private Poller poller;
+
+    @Setup
+    public void setup() throws Exception {
+        directory = new SyntheticDirectory(numberOfFiles, churnPercent);
+        ListenerNotifier notifier = new ListenerNotifier(LoggerFactory.getLogger(ListenerNotifier.class), new HashSet<>());
+        DirectoryPoller dp = new DirectoryPoller(notifier, DirectoryPoller.newBuilder().addPolledDirectory(directory));
+        poller = new Poller(dp, directory, new LinkedHashSet<>());
+        // First poll-cycle only collects the initial content.
+        poller.call();
+    }
+
+    @Benchmark
+    public Object pollCycle() throws InterruptedException {
+        directory.nextCycle();
+        return poller.call();
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.drapostolos.rdp4j;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.github.drapostolos.rdp4j.spi.FileElement;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * An in-memory {@link PolledDirectory} that alternates between two pre-built
+ * listings. The second listing differs from the first by the given churn
+ * percentage: one third of the churned files are removed, one third are added
+ * and one third are modified. Building the listings up front keeps the cost
+ * of the listing itself out of the measurements.
+ */
+final class SyntheticDirectory implements PolledDirectory {
+    private final Set<FileElement> baseline;
+    private final Set<FileElement> churned;
+    private boolean useChurned = true;
+
+    SyntheticDirectory(int numberOfFiles, int churnPercent) {
+        int churn = (int) ((long) numberOfFiles * churnPercent / 100);
+        int removed = churn / 3;
+        int added = churn / 3;
+        int modified = churn - removed - added;
+        baseline = new LinkedHashSet<>(numberOfFiles * 2);
+        churned = new LinkedHashSet<>(numberOfFiles * 2);
+        for (int i = 0; i < numberOfFiles; i++) {
+            SyntheticFile file = new SyntheticFile(name(i), 1L);
+            baseline.add(file);
+            if (i < removed) {
+                continue;
+            }
+            if (i < removed + modified) {
+                churned.add(new SyntheticFile(file.name, 2L));
+            } else {
+                churned.add(file);
+            }
+        }
+        for (int i = numberOfFiles; i < numberOfFiles + added; i++) {
+            churned.add(new SyntheticFile(name(i), 1L));
+        }
+    }
+
+    private static String name(int i) {
+        return "file-" + i + ".dat";
+    }
+
+    /**
+     * Switches to the other listing, so that each poll-cycle observes
+     * the configured churn.
+     */
+    void nextCycle() {
+        useChurned = !useChurned;
+    }
+
+    @Override
+    public Set<FileElement> listFiles() {
+        return useChurned ? churned : baseline;
+    }
+
+    @Override
+    public String toString() {
+        return "SyntheticDirectory [" + baseline.size() + " files]";
+    }
+
+    private static final class SyntheticFile implements FileElement {
+        private final String name;
+        private final long lastModified;
+
+        SyntheticFile(String name, long lastModified) {
+            this.name = name;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.github.drapostolos.rdp4j;
 
+import java.util.Set;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
 /**
  * An event that is triggered after each poll-cycle of the {@link DirectoryPoller}.
  * 
@@ -7,8 +11,23 @@ package com.github.drapostolos.rdp4j;
  */
 public final class AfterPollingCycleEvent extends EventExposingDirectoryPoller {
 
-    AfterPollingCycleEvent(DirectoryPoller dp) {
+    private final Set<PolledDirectory> polledDirectories;
+
+    AfterPollingCycleEvent(DirectoryPoller dp, Set<PolledDirectory> polledDirectories) {
         super(dp);
+        this.polledDirectories = polledDirectories;
+    }
+
+    /**
+     * Returns the {@link PolledDirectory}'s polled in this poll-cycle. That is all
+     * directories due in this poll-cycle, or a single directory if the
+     * {@link DirectoryPoller} has been configured for pipelined polling.
+     * 
+     * @see DirectoryPollerBuilder#enablePipelinedPolling()
+     * @return the directories polled in this poll-cycle.
+     */
+    public Set<PolledDirectory> getPolledDirectories() {
+        return polledDirectories;
     }
 
 }
@@ -31,13 +31,13 @@ public final class AfterStopEvent extends EventExposingDirectoryPoller {
     }
 
 	private Set<FileElement> currentFiles(Poller p) {
-		return p.currentListedFiles.values().stream()
+		return p.getLastListedFiles().stream()
 		.map(f -> f.getFileElement())
 		.collect(toSet());
 	}
 
 	private Set<CachedFileElement> cachedFiles(Poller p) {
-		return p.currentListedFiles.values().stream()
+		return p.getLastListedFiles().stream()
 		.map(f -> f.getCachedFileElement())
 		.collect(toSet());
 	}
@@ -0,0 +1,508 @@
+package com.github.drapostolos.rdp4j;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * Wraps a {@link Rdp4jListener}, so that its methods are invoked in a thread of
+ * its own instead of in the polling thread. A slow listener then no longer
+ * stalls polling of directories.
+ * <p>
+ * Events are put in a bounded queue, and delivered to the wrapped listener in
+ * the same order by a single thread, i.e. the wrapped listener is never invoked
+ * concurrently. The thread is a daemon thread, started when an event is queued.
+ * It ends when it has delivered {@link AfterStopEvent}, when it has been idle for
+ * a minute, or once the queued events are delivered after this listener is
+ * removed with {@link DirectoryPoller#removeListener(Rdp4jListener)}. What happens when the queue is full is decided by the
+ * {@link OverflowPolicy}. Only events handled by the wrapped listener are queued.
+ * <p>
+ * {@link DirectoryPollerListener#beforeStart(BeforeStartEvent)} is invoked
+ * directly, as listeners may add polled directories to the event.
+ * {@link DirectoryPollerListener#afterStop(AfterStopEvent)} is queued regardless
+ * of the capacity, and blocks until all queued events are delivered. I.e. when
+ * {@link DirectoryPoller#stop()} returns, the wrapped listener has received
+ * all events.
+ * <p>
+ * Example:
+ * <pre>
+ *  DirectoryPoller dp = DirectoryPoller.newBuilder()
+ *  .addPolledDirectory(new MyPolledDirectoryImp(...))
+ *  .addListener(new AsyncListener(new MyUploadingListener(), 10000, OverflowPolicy.BLOCK))
+ *  .start();
+ * </pre>
+ */
+public final class AsyncListener implements DirectoryListener, IoErrorListener, DirectoryPollerListener,
+        PollCycleListener, InitialContentListener, BatchDirectoryListener {
+    private static final Logger LOG = LoggerFactory.getLogger(AsyncListener.class);
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final long WORKER_KEEP_ALIVE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private final Rdp4jListener listener;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition delivered = lock.newCondition();
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private final Map<FileKey, Pending> queuedFileEvents = new HashMap<>();
+    private int size = 0;
+    private long droppedEvents = 0;
+    private Thread worker;
+    private boolean isWorkerToEndWhenIdle = false;
+
+    /**
+     * What to do with a new event, when the queue of an {@link AsyncListener} is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Block the polling thread until there is room in the queue.
+         */
+        BLOCK,
+
+        /**
+         * Drop the oldest queued event, to make room for the new event.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Merge the new event with a queued event of the same file, if any.
+         * Example: a file added and then modified, is delivered as added with
+         * the latest attributes, and a file added and then removed is not
+         * delivered at all. Otherwise, block the polling thread until there is
+         * room in the queue.
+         */
+        COALESCE
+    }
+
+    /*
+     * A queued event. Cancelled when coalesced away, but left in the queue.
+     */
+    private static final class Pending {
+        private Event event;
+        private final long enqueuedAtNanos = System.nanoTime();
+        private boolean cancelled = false;
+        private boolean isDelivered = false;
+
+        private Pending(Event event) {
+            this.event = event;
+        }
+    }
+
+    private static final class FileKey {
+        private final PolledDirectory directory;
+        private final String name;
+
+        private FileKey(EventExposingFileElement event) {
+            directory = event.getPolledDirectory();
+            name = event.getCachedFileElement().getName();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * directory.hashCode() + name.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FileKey))
+                return false;
+            FileKey other = (FileKey) obj;
+            return directory.equals(other.directory) && name.equals(other.name);
+        }
+    }
+
+    /**
+     * @param listener the listener to invoke asynchronously.
+     * @param capacity the maximum number of queued events.
+     * @param policy what to do with new events when the queue is full.
+     * @throws NullPointerException if <code>listener</code> or <code>policy</code> is null.
+     * @throws IllegalArgumentException if <code>capacity</code> is less than one.
+     */
+    public AsyncListener(Rdp4jListener listener, int capacity, OverflowPolicy policy) {
+        if (listener == null || policy == null) {
+            throw new NullPointerException("null argument not allowed!");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Argument 'capacity' is less than one: " + capacity);
+        }
+        this.listener = listener;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    /**
+     * @return the wrapped listener.
+     */
+    public Rdp4jListener getListener() {
+        return listener;
+    }
+
+    /**
+     * @return the maximum number of queued events.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the {@link OverflowPolicy} of this listener.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return the number of events waiting to be delivered to the wrapped listener,
+     *         not counting the event being delivered.
+     */
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return how long the oldest queued event has waited, in milliseconds.
+     *         0 if the queue is empty.
+     */
+    public long getLagInMillis() {
+        lock.lock();
+        try {
+            for (Pending pending : queue) {
+                if (!pending.cancelled) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pending.enqueuedAtNanos);
+                }
+            }
+            return 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of events dropped due to {@link OverflowPolicy#DROP_OLDEST},
+     *         or coalesced away due to {@link OverflowPolicy#COALESCE}.
+     */
+    public long getDroppedEventCount() {
+        lock.lock();
+        try {
+            return droppedEvents;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /*
+     * The listener interfaces to notify this instance of. Those of the wrapped
+     * listener, and DirectoryPollerListener, as afterStop ends the delivering thread.
+     */
+    boolean listensTo(Class<? extends Rdp4jListener> listenerType) {
+        if (listenerType == DirectoryPollerListener.class) {
+            return true;
+        }
+        if (listener instanceof AsyncListener) {
+            return ((AsyncListener) listener).listensTo(listenerType);
+        }
+        return listenerType.isInstance(listener);
+    }
+
+    /*
+     * Called when removed from the DirectoryPoller, which notifies this listener
+     * no more. So AfterStopEvent may never come to end the delivering thread.
+     */
+    void removed() {
+        lock.lock();
+        try {
+            isWorkerToEndWhenIdle = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void beforeStart(BeforeStartEvent event) {
+        if (listener instanceof DirectoryPollerListener) {
+            ((DirectoryPollerListener) listener).beforeStart(event);
+        }
+    }
+
+    @Override
+    public void afterStop(AfterStopEvent event) {
+        // Queued even if not handled by the listener, to let the thread deliver the rest and end.
+        lock.lock();
+        try {
+            Pending pending = append(event);
+            while (!pending.isDelivered) {
+                delivered.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void beforePollingCycle(BeforePollingCycleEvent event) throws InterruptedException {
+        if (listener instanceof PollCycleListener) {
+            enqueue(event);
+        }
+    }
+
+    @Override
+    public void afterPollingCycle(AfterPollingCycleEvent event) throws InterruptedException {
+        if (listener instanceof PollCycleListener) {
+            enqueue(event);
+        }
+    }
+
+    @Override
+    public void initialContent(InitialContentEvent event) throws InterruptedException {
+        if (listener instanceof InitialContentListener) {
+            enqueue(event);
+        }
+    }
+
+    @Override
+    public void fileAdded(FileAddedEvent event) throws InterruptedException {
+        if (listener instanceof DirectoryListener) {
+            enqueue(event);
+        }
+    }
+
+    @Override
+    public void fileRemoved(FileRemovedEvent event) throws InterruptedException {
+        if (listener instanceof DirectoryListener) {
+            enqueue(event);
+        }
+    }
+
+    @Override
+    public void fileModified(FileModifiedEvent event) throws InterruptedException {
+        if (listener instanceof DirectoryListener) {
+            enqueue(event);
+        }
+    }
+
+    @Override
+    public void directoryChanged(DirectoryChangedEvent event) throws InterruptedException {
+        if (listener instanceof BatchDirectoryListener) {
+            enqueue(event);
+        }
+    }
+
+    @Override
+    public void ioErrorRaised(IoErrorRaisedEvent event) throws InterruptedException {
+        if (listener instanceof IoErrorListener) {
+            enqueue(event);
+        }
+    }
+
+    @Override
+    public void ioErrorCeased(IoErrorCeasedEvent event) throws InterruptedException {
+        if (listener instanceof IoErrorListener) {
+            enqueue(event);
+        }
+    }
+
+    private void enqueue(Event event) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size >= capacity) {
+                if (policy == OverflowPolicy.DROP_OLDEST) {
+                    dropOldest();
+                } else if (policy == OverflowPolicy.COALESCE && coalesce(event)) {
+                    return;
+                } else {
+                    notFull.await();
+                }
+            }
+            append(event);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Pending append(Event event) {
+        Pending pending = new Pending(event);
+        queue.addLast(pending);
+        if (event instanceof EventExposingFileElement) {
+            queuedFileEvents.put(new FileKey((EventExposingFileElement) event), pending);
+        }
+        size++;
+        startWorkerIfNeeded();
+        notEmpty.signal();
+        return pending;
+    }
+
+    private void dropOldest() {
+        Pending oldest = queue.pollFirst();
+        if (!oldest.cancelled) {
+            forget(oldest);
+            size--;
+            droppedEvents++;
+        }
+    }
+
+    /*
+     * Merges the given file event into a queued event of the same file, keeping
+     * the position of the queued event. Returns false if there is nothing to
+     * merge with.
+     */
+    private boolean coalesce(Event event) {
+        if (!(event instanceof EventExposingFileElement)) {
+            return false;
+        }
+        EventExposingFileElement newEvent = (EventExposingFileElement) event;
+        FileKey key = new FileKey(newEvent);
+        Pending queued = queuedFileEvents.get(key);
+        if (queued == null) {
+            return false;
+        }
+        DirectoryPoller dp = newEvent.getDirectoryPoller();
+        PolledDirectory directory = newEvent.getPolledDirectory();
+        FileElementAndCache file = newEvent.getFileElementAndCache();
+        if (queued.event instanceof FileAddedEvent && newEvent instanceof FileRemovedEvent) {
+            queued.cancelled = true;
+            queuedFileEvents.remove(key);
+            size--;
+            droppedEvents += 2;
+            notFull.signal();
+            return true;
+        }
+        if (queued.event instanceof FileAddedEvent) {
+            queued.event = new FileAddedEvent(dp, directory, file);
+        } else if (queued.event instanceof FileRemovedEvent && newEvent instanceof FileAddedEvent) {
+            queued.event = new FileModifiedEvent(dp, directory, file);
+        } else {
+            queued.event = newEvent;
+        }
+        droppedEvents++;
+        return true;
+    }
+
+    private void forget(Pending pending) {
+        if (pending.event instanceof EventExposingFileElement) {
+            queuedFileEvents.remove(new FileKey((EventExposingFileElement) pending.event), pending);
+        }
+    }
+
+    private void startWorkerIfNeeded() {
+        if (worker == null) {
+            worker = new Thread(this::deliverEvents, "AsyncListener-" + threadCount.incrementAndGet());
+            worker.setDaemon(true);
+            isWorkerToEndWhenIdle = false;
+            worker.start();
+        }
+    }
+
+    /*
+     * Runs until AfterStopEvent is delivered, or the queue stays empty, see
+     * awaitEvent(). A new thread is started if events are queued after that.
+     */
+    private void deliverEvents() {
+        while (true) {
+            Pending pending;
+            lock.lock();
+            try {
+                pending = awaitEvent();
+                if (pending == null) {
+                    worker = null;
+                    return;
+                }
+                if (pending.cancelled) {
+                    continue;
+                }
+                forget(pending);
+                size--;
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+            deliver(pending.event);
+            lock.lock();
+            try {
+                pending.isDelivered = true;
+                delivered.signalAll();
+                if (pending.event instanceof AfterStopEvent && size == 0) {
+                    worker = null;
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /*
+     * Returns null if the queue stays empty for the keep-alive time, or after
+     * this listener is removed, or if the thread is interrupted.
+     */
+    private Pending awaitEvent() {
+        long idleNanos = WORKER_KEEP_ALIVE_NANOS;
+        Pending pending = queue.pollFirst();
+        while (pending == null) {
+            if (isWorkerToEndWhenIdle || idleNanos <= 0) {
+                return null;
+            }
+            try {
+                idleNanos = notEmpty.awaitNanos(idleNanos);
+            } catch (InterruptedException e) {
+                return null;
+            }
+            pending = queue.pollFirst();
+        }
+        return pending;
+    }
+
+    /*
+     * Ignore if the listener crashes, same as when invoked directly by the DirectoryPoller.
+     */
+    private void deliver(Event event) {
+        try {
+            if (event instanceof FileAddedEvent) {
+                ((DirectoryListener) listener).fileAdded((FileAddedEvent) event);
+            } else if (event instanceof FileRemovedEvent) {
+                ((DirectoryListener) listener).fileRemoved((FileRemovedEvent) event);
+            } else if (event instanceof FileModifiedEvent) {
+                ((DirectoryListener) listener).fileModified((FileModifiedEvent) event);
+            } else if (event instanceof DirectoryChangedEvent) {
+                ((BatchDirectoryListener) listener).directoryChanged((DirectoryChangedEvent) event);
+            } else if (event instanceof BeforePollingCycleEvent) {
+                ((PollCycleListener) listener).beforePollingCycle((BeforePollingCycleEvent) event);
+            } else if (event instanceof AfterPollingCycleEvent) {
+                ((PollCycleListener) listener).afterPollingCycle((AfterPollingCycleEvent) event);
+            } else if (event instanceof InitialContentEvent) {
+                ((InitialContentListener) listener).initialContent((InitialContentEvent) event);
+            } else if (event instanceof IoErrorRaisedEvent) {
+                ((IoErrorListener) listener).ioErrorRaised((IoErrorRaisedEvent) event);
+            } else if (event instanceof IoErrorCeasedEvent) {
+                ((IoErrorListener) listener).ioErrorCeased((IoErrorCeasedEvent) event);
+            } else if (event instanceof AfterStopEvent && listener instanceof DirectoryPollerListener) {
+                ((DirectoryPollerListener) listener).afterStop((AfterStopEvent) event);
+            }
+        } catch (InterruptedException e) {
+            LOG.info("Thread interrupted");
+        } catch (Throwable t) {
+            LOG.error("Exception thrown by client implementation (of Rdp4jListener interface).", t);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncListener [listener=" + listener + ", capacity=" + capacity + ", policy=" + policy
+                + ", queueSize=" + getQueueSize() + "]";
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.drapostolos.rdp4j;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces a file without ever leaving a partly written file in its place. The
+ * content is written to a sibling temporary file, forced to disk, and then
+ * moved over the file, atomically where the file system supports it. Optionally,
+ * the replaced file is kept as the previous generation, see
+ * {@link #previousGenerationOf(Path)}. The file exists throughout, as the
+ * previous generation is a hard link to, or a copy of, the replaced file.
+ */
+final class AtomicFileWriter {
+
+    AtomicFileWriter() {
+        throw new AssertionError("Not meant for instantiation");
+    }
+
+    interface ContentWriter {
+
+        /**
+         * Writes the content to the given channel, without closing it.
+         */
+        void write(FileChannel channel) throws IOException;
+    }
+
+    static Path previousGenerationOf(Path file) {
+        return file.resolveSibling(file.getFileName() + ".prev");
+    }
+
+    static void write(Path file, boolean keepPreviousGeneration, ContentWriter writer) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = parent.resolve(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            writer.write(channel);
+            channel.force(true);
+        }
+        if (keepPreviousGeneration && Files.exists(file)) {
+            keepPreviousGeneration(file, parent);
+        }
+        move(temp, file);
+        forceDirectory(parent);
+    }
+
+    /*
+     * The previous generation is linked, or copied, next to it first, and then
+     * moved in place, so it too is replaced atomically.
+     */
+    private static void keepPreviousGeneration(Path file, Path parent) throws IOException {
+        Path temp = parent.resolve(file.getFileName() + ".prev.tmp");
+        Files.deleteIfExists(temp);
+        try {
+            Files.createLink(temp, file);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(file, temp);
+            try (FileChannel channel = FileChannel.open(temp, WRITE)) {
+                channel.force(true);
+            }
+        }
+        move(temp, previousGenerationOf(file));
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /*
+     * Makes the renames durable. Not supported on all platforms, e.g. not on
+     * Windows, where a rename is durable once it returns.
+     */
+    private static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported.
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.drapostolos.rdp4j;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * A listener of all files added, removed and modified in a {@link PolledDirectory}
+ * during one poll-cycle, delivered in a single {@link DirectoryChangedEvent}. An
+ * alternative to {@link DirectoryListener}, for clients that handle changes in
+ * bulk, like inserting them into a database in one call.
+ *
+ * @see <a href="https://github.com/drapostolos/rdp4j/wiki/User-Guide">User-Guide</a>
+ */
+public interface BatchDirectoryListener extends Rdp4jListener {
+
+    /**
+     * Invoked once per poll-cycle for each {@link PolledDirectory} where files
+     * were added, removed or modified. Invoked after the
+     * {@link DirectoryListener} methods of the same changes.
+     * 
+     * @param event provided by the {@link DirectoryPoller}.
+     * @throws InterruptedException when interrupted.
+     */
+    void directoryChanged(DirectoryChangedEvent event) throws InterruptedException;
+
+}
@@ -1,6 +1,7 @@
 package com.github.drapostolos.rdp4j;
 
 import java.util.Set;
+import java.util.function.Supplier;
 
 import com.github.drapostolos.rdp4j.spi.PolledDirectory;
 
@@ -37,4 +38,8 @@ public final class BeforeStartEvent implements Event {
 		builder.addPolledDirectory(directory, previousState);
 	}
 
+	void addPolledDirectory(PolledDirectory directory, Supplier<Set<CachedFileElement>> previousState) {
+		builder.addPolledDirectory(directory, previousState);
+	}
+
 }
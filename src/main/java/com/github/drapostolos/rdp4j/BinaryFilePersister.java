@@ -0,0 +1,192 @@
+package com.github.drapostolos.rdp4j;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.notExists;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.drapostolos.rdp4j.spi.Persister;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * Persists the state in a compact, versioned binary format, instead of with
+ * Java serialization. The file is streamed through a {@link FileChannel}, and
+ * holds one section per directory:
+ * <pre>
+ * file      = magic:int32 ("RDP4") version:int8 directoryCount:varint section*
+ * section   = directory:string sectionLength:int64 entryCount:varint entry*
+ * entry     = (timestampDelta:zigzag-varint &lt;&lt; 1 | isDirectory:1 bit) name:string
+ * string    = byteLength:varint UTF-8 bytes
+ * </pre>
+ * Entries are sorted by last modified time, and each time is stored as the
+ * difference to the previous one. The section length is the number of bytes
+ * after that field, so sections can be skipped without being decoded.
+ */
+class BinaryFilePersister implements Persister {
+	private static final Logger LOG = LoggerFactory.getLogger(BinaryFilePersister.class);
+	static final int MAGIC = 0x52445034;
+	static final int VERSION = 1;
+	private static final Comparator<CachedFileElement> BY_LAST_MODIFIED =
+			Comparator.comparingLong(CachedFileElement::lastModified);
+	private final Path persistedFile;
+	private final Function<String, PolledDirectory> stringToDirFunction;
+	private final Function<PolledDirectory, String> dirToStringFunction;
+
+	BinaryFilePersister(Path file, Function<String, PolledDirectory> stringToDir,
+			Function<PolledDirectory, String> dirToString) {
+		this.persistedFile = file;
+		this.stringToDirFunction = stringToDir;
+		this.dirToStringFunction = dirToString;
+	}
+
+	@Override
+	public boolean containsData() {
+		return Files.exists(persistedFile);
+	}
+
+	@Override
+	public Map<PolledDirectory, Set<CachedFileElement>> readData() {
+		try {
+			Map<PolledDirectory, Set<CachedFileElement>> result = new HashMap<>();
+			readState(persistedFile).forEach((directory, files) -> {
+				result.put(stringToDirFunction.apply(directory), files);
+			});
+			log(result, "Found persisted");
+			return result;
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to read persisted state from: " + persistedFile, e);
+		}
+	}
+
+	/**
+	 * Reads all sections of the given file, keyed by the directory strings.
+	 */
+	static Map<String, Set<CachedFileElement>> readState(Path file) throws IOException {
+		try (BinaryStateInput in = new BinaryStateInput(FileChannel.open(file, READ))) {
+			int directoryCount = readHeader(in, file);
+			Map<String, Set<CachedFileElement>> result = new HashMap<>();
+			for (int i = 0; i < directoryCount; i++) {
+				String directory = in.readString();
+				in.readLong(); // section length
+				result.put(directory, readEntries(in));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Reads and validates the header, and returns the number of directory sections.
+	 */
+	static int readHeader(BinaryStateInput in, Path file) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a persisted rdp4j state file: " + file);
+		}
+		int version = in.readByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported version " + version + " of persisted state file: " + file);
+		}
+		return in.readLength();
+	}
+
+	static Set<CachedFileElement> readEntries(BinaryStateInput in) throws IOException {
+		int entryCount = in.readLength();
+		Set<CachedFileElement> files = new LinkedHashSet<>(Math.max(16, (int) (entryCount / 0.75f) + 1));
+		long lastModified = 0;
+		for (int i = 0; i < entryCount; i++) {
+			long deltaAndFlag = in.readSignedVarLong();
+			lastModified += deltaAndFlag >> 1;
+			boolean isDirectory = (deltaAndFlag & 1) != 0;
+			files.add(CachedFileElement.of(in.readString(), lastModified, isDirectory));
+		}
+		return files;
+	}
+
+	@Override
+	public void writeData(Map<PolledDirectory, Set<CachedFileElement>> data) {
+		createParentDirectoryIfMissing(persistedFile);
+		try (BinaryStateFileOutput out = new BinaryStateFileOutput(
+				FileChannel.open(persistedFile, CREATE, WRITE, TRUNCATE_EXISTING))) {
+			writeData(out, data);
+			log(data, "Persisting data");
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to persist state to: " + persistedFile, e);
+		}
+	}
+
+	void writeData(BinaryStateFileOutput out, Map<PolledDirectory, Set<CachedFileElement>> data) throws IOException {
+		Map<String, Set<CachedFileElement>> state = new HashMap<>();
+		data.forEach((directory, files) -> state.put(dirToStringFunction.apply(directory), files));
+		writeState(out, state);
+	}
+
+	/**
+	 * Writes all sections, keyed by the directory strings.
+	 */
+	static void writeState(BinaryStateFileOutput out, Map<String, ? extends Collection<CachedFileElement>> state)
+			throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeVarLong(state.size());
+		for (Entry<String, ? extends Collection<CachedFileElement>> entry : state.entrySet()) {
+			out.writeString(entry.getKey());
+			long lengthPosition = out.position();
+			out.writeLong(0);
+			writeEntries(out, entry.getValue());
+			out.patchLong(lengthPosition, out.position() - lengthPosition - Long.BYTES);
+		}
+	}
+
+	static void writeEntries(BinaryStateOutput out, Collection<CachedFileElement> files) throws IOException {
+		List<CachedFileElement> sorted = new ArrayList<>(files);
+		sorted.sort(BY_LAST_MODIFIED);
+		out.writeVarLong(sorted.size());
+		long previous = 0;
+		for (CachedFileElement file : sorted) {
+			long delta = file.lastModified() - previous;
+			out.writeSignedVarLong(delta << 1 | (file.isDirectory() ? 1 : 0));
+			out.writeString(file.getName());
+			previous = file.lastModified();
+		}
+	}
+
+	private void createParentDirectoryIfMissing(Path storage) {
+		Path parent = storage.getParent();
+		if(parent != null) {
+			if (notExists(parent)) {
+				try {
+					createDirectories(parent);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}
+	}
+
+	private void log(Map<?, Set<CachedFileElement>> files, String subject) {
+		LOG.info(subject + " [in " + persistedFile + "]");
+		files.forEach((polledDirectory, fileElements) -> {
+			LOG.info("  {} FileElements in {}", fileElements.size(), polledDirectory);
+		});
+	}
+}
@@ -0,0 +1,37 @@
+package com.github.drapostolos.rdp4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link BinaryStateOutput} on top of a {@link FileChannel}, which can also
+ * overwrite bytes already written, as needed for the section lengths of the
+ * binary state format.
+ */
+final class BinaryStateFileOutput extends BinaryStateOutput {
+    private final FileChannel channel;
+
+    BinaryStateFileOutput(FileChannel channel) {
+        super(channel);
+        this.channel = channel;
+    }
+
+    /**
+     * @return the position in the file of the next byte written.
+     */
+    long position() throws IOException {
+        return channel.position() + bufferedBytes();
+    }
+
+    /**
+     * Overwrites 8 bytes already written at the given <code>position</code>.
+     */
+    void patchLong(long position, long value) throws IOException {
+        flush();
+        ByteBuffer patch = ByteBuffer.allocate(Long.BYTES).putLong(0, value);
+        while (patch.hasRemaining()) {
+            channel.write(patch, position + patch.position());
+        }
+    }
+}
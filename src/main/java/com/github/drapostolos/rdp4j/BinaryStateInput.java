@@ -0,0 +1,129 @@
+package com.github.drapostolos.rdp4j;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered reader of the primitives of the binary state format, see
+ * {@link BinaryFilePersister}, on top of a {@link FileChannel} or of a
+ * {@link ByteBuffer}, like a memory-mapped region of the file.
+ */
+final class BinaryStateInput implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    BinaryStateInput(FileChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.flip();
+    }
+
+    /*
+     * Reads the remaining bytes of the given buffer, only.
+     */
+    BinaryStateInput(ByteBuffer buffer) {
+        this.channel = null;
+        this.buffer = buffer;
+    }
+
+    int readByte() throws IOException {
+        require(1);
+        return buffer.get() & 0xFF;
+    }
+
+    int readInt() throws IOException {
+        require(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    long readLong() throws IOException {
+        require(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable length number");
+    }
+
+    long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    int readLength() throws IOException {
+        long length = readVarLong();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Malformed length: " + length);
+        }
+        return (int) length;
+    }
+
+    String readString() throws IOException {
+        byte[] bytes = new byte[readLength()];
+        int offset = 0;
+        while (offset < bytes.length) {
+            require(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the position in the file of the next byte read.
+     */
+    long position() throws IOException {
+        if (channel == null) {
+            return buffer.position();
+        }
+        return channel.position() - buffer.remaining();
+    }
+
+    void skip(long bytes) throws IOException {
+        if (bytes <= buffer.remaining()) {
+            buffer.position(buffer.position() + (int) bytes);
+        } else if (channel == null) {
+            throw new EOFException("Unexpected end of persisted state");
+        } else {
+            channel.position(position() + bytes);
+            buffer.clear().flip();
+        }
+    }
+
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        if (channel == null) {
+            throw new EOFException("Unexpected end of persisted state");
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of persisted state");
+            }
+        }
+        buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.drapostolos.rdp4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writer of the primitives of the binary state format, see
+ * {@link BinaryFilePersister}, on top of any {@link WritableByteChannel}. Whole
+ * state files, which need to patch section lengths, are written by a
+ * {@link BinaryStateFileOutput}.
+ */
+class BinaryStateOutput implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    BinaryStateOutput(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    void writeByte(int b) throws IOException {
+        ensureRoom(1);
+        buffer.put((byte) b);
+    }
+
+    void writeInt(int i) throws IOException {
+        ensureRoom(Integer.BYTES);
+        buffer.putInt(i);
+    }
+
+    void writeLong(long l) throws IOException {
+        ensureRoom(Long.BYTES);
+        buffer.putLong(l);
+    }
+
+    /*
+     * Unsigned LEB128: 7 bits per byte, high bit set on all bytes but the last.
+     */
+    void writeVarLong(long value) throws IOException {
+        ensureRoom(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    void writeSignedVarLong(long value) throws IOException {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length);
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensureRoom(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * @return the number of bytes written but not yet flushed to the channel.
+     */
+    int bufferedBytes() {
+        return buffer.position();
+    }
+
+    private void ensureRoom(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
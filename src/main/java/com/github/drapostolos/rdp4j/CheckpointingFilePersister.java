@@ -0,0 +1,373 @@
+package com.github.drapostolos.rdp4j;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.drapostolos.rdp4j.spi.Persister;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * Persists the state as a snapshot, in the format of {@link BinaryFilePersister},
+ * plus a write-ahead log of the changes of each poll-cycle. The log is a sibling
+ * file, named as the snapshot file with a ".log" suffix, of checksummed records:
+ * <pre>
+ * log       = record*
+ * record    = payloadLength:int32 crc32:int32 payload
+ * payload   = 1:int8 directory:string entries        (replaces all files of a directory)
+ *           | 2:int8 directory:string entries names  (puts and removes files of a directory)
+ *           | 3:int8 directory:string                (removes a directory no longer polled)
+ * names     = nameCount:varint name:string*
+ * </pre>
+ * where <code>entries</code> are encoded as a section of {@link BinaryFilePersister}.
+ * Appending a record is proportional to the number of changed files, not to the
+ * size of the directory. The log is forced to disk once per poll-cycle in which
+ * records were appended.
+ * <p>
+ * Reading the state replays the log on top of the snapshot, and stops at the first
+ * incomplete or corrupt record, e.g. one torn by a crash. That tail is truncated
+ * before the next record is appended. Replaying a record twice has no further
+ * effect, so a crash during compaction loses nothing.
+ * <p>
+ * Every given number of poll-cycles, or when the log grows beyond a given size,
+ * the log is compacted: the replayed state is written to a new snapshot, which
+ * atomically replaces the old one, and the log is emptied. This bounds the time
+ * to recover the state after a crash. {@link #writeData(Map)} writes a snapshot
+ * of the full state, and empties the log too.
+ */
+class CheckpointingFilePersister implements Persister {
+	private static final Logger LOG = LoggerFactory.getLogger(CheckpointingFilePersister.class);
+	private static final int REPLACE = 1;
+	private static final int DELTA = 2;
+	private static final int REMOVE = 3;
+	private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+	private final Path snapshotFile;
+	private final Path logFile;
+	private final Function<String, PolledDirectory> stringToDirFunction;
+	private final Function<PolledDirectory, String> dirToStringFunction;
+	private final int cyclesBetweenSnapshots;
+	private final long maxLogSizeInBytes;
+	private FileChannel log;
+	private long validLogSize = -1;
+	private boolean isLogForced = true;
+	private int cyclesSinceSnapshot = 0;
+
+	CheckpointingFilePersister(Path file, Function<String, PolledDirectory> stringToDir,
+			Function<PolledDirectory, String> dirToString, int cyclesBetweenSnapshots, long maxLogSizeInBytes) {
+		this.snapshotFile = file;
+		this.logFile = file.resolveSibling(file.getFileName() + ".log");
+		this.stringToDirFunction = stringToDir;
+		this.dirToStringFunction = dirToString;
+		this.cyclesBetweenSnapshots = cyclesBetweenSnapshots;
+		this.maxLogSizeInBytes = maxLogSizeInBytes;
+	}
+
+	Path getLogFile() {
+		return logFile;
+	}
+
+	@Override
+	public boolean containsData() {
+		return Files.exists(snapshotFile) || Files.exists(logFile);
+	}
+
+	@Override
+	public synchronized Map<PolledDirectory, Set<CachedFileElement>> readData() {
+		try {
+			Map<PolledDirectory, Set<CachedFileElement>> result = new HashMap<>();
+			readState().forEach((directory, files) -> {
+				result.put(stringToDirFunction.apply(directory), new LinkedHashSet<>(files.values()));
+			});
+			LOG.info("Found persisted state of {} directories [in {}]", result.size(), snapshotFile);
+			return result;
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to read persisted state from: " + snapshotFile, e);
+		}
+	}
+
+	/*
+	 * The snapshot with the log replayed on top of it. Also sets validLogSize.
+	 */
+	private Map<String, Map<String, CachedFileElement>> readState() throws IOException {
+		Map<String, Map<String, CachedFileElement>> state = new HashMap<>();
+		if (Files.exists(snapshotFile)) {
+			BinaryFilePersister.readState(snapshotFile).forEach((directory, files) -> {
+				state.put(directory, byName(files));
+			});
+		}
+		validLogSize = replayLog(state);
+		return state;
+	}
+
+	private long replayLog(Map<String, Map<String, CachedFileElement>> state) throws IOException {
+		if (!Files.exists(logFile)) {
+			return 0;
+		}
+		try (FileChannel channel = FileChannel.open(logFile, READ)) {
+			ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+			long position = 0;
+			while (true) {
+				header.clear();
+				if (!readFully(channel, header)) {
+					break;
+				}
+				int payloadLength = header.getInt(0);
+				if (payloadLength <= 0 || payloadLength > channel.size() - position - RECORD_HEADER_SIZE) {
+					break;
+				}
+				ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+				if (!readFully(channel, payload) || (int) crc32(payload.array()) != header.getInt(Integer.BYTES)) {
+					break;
+				}
+				payload.flip();
+				try {
+					apply(new BinaryStateInput(payload), state);
+				} catch (EOFException | IllegalArgumentException e) {
+					break;
+				}
+				position += RECORD_HEADER_SIZE + payloadLength;
+			}
+			if (position < channel.size()) {
+				LOG.warn("Ignoring {} bytes of incomplete records at the end of: {}",
+						channel.size() - position, logFile);
+			}
+			return position;
+		}
+	}
+
+	private static boolean readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void apply(BinaryStateInput in, Map<String, Map<String, CachedFileElement>> state)
+			throws IOException {
+		int type = in.readByte();
+		String directory = in.readString();
+		if (type == REPLACE) {
+			state.put(directory, byName(BinaryFilePersister.readEntries(in)));
+		} else if (type == DELTA) {
+			Set<CachedFileElement> puts = BinaryFilePersister.readEntries(in);
+			Map<String, CachedFileElement> files = state.computeIfAbsent(directory, d -> new LinkedHashMap<>());
+			int removedCount = in.readLength();
+			for (int i = 0; i < removedCount; i++) {
+				files.remove(in.readString());
+			}
+			puts.forEach(file -> files.put(file.getName(), file));
+		} else if (type == REMOVE) {
+			state.remove(directory);
+		} else {
+			throw new IllegalArgumentException("Unknown record type: " + type);
+		}
+	}
+
+	private static Map<String, CachedFileElement> byName(Collection<CachedFileElement> files) {
+		Map<String, CachedFileElement> result = new LinkedHashMap<>();
+		files.forEach(file -> result.put(file.getName(), file));
+		return result;
+	}
+
+	/**
+	 * Appends a record that replaces all files of the given directory.
+	 */
+	synchronized void logReplace(PolledDirectory directory, Collection<CachedFileElement> files) {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		try (BinaryStateOutput out = new BinaryStateOutput(Channels.newChannel(payload))) {
+			out.writeByte(REPLACE);
+			out.writeString(dirToStringFunction.apply(directory));
+			BinaryFilePersister.writeEntries(out, files);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		append(payload.toByteArray());
+	}
+
+	/**
+	 * Appends a record that puts the given added and modified files, and removes
+	 * the given removed files, of the given directory.
+	 */
+	synchronized void logDelta(PolledDirectory directory, Collection<CachedFileElement> puts,
+			Collection<CachedFileElement> removed) {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		try (BinaryStateOutput out = new BinaryStateOutput(Channels.newChannel(payload))) {
+			out.writeByte(DELTA);
+			out.writeString(dirToStringFunction.apply(directory));
+			BinaryFilePersister.writeEntries(out, puts);
+			out.writeVarLong(removed.size());
+			for (CachedFileElement file : removed) {
+				out.writeString(file.getName());
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		append(payload.toByteArray());
+	}
+
+	/**
+	 * Appends a record that removes the given directory, which is no longer
+	 * polled. The record is forced to disk right away, as no poll-cycle of the
+	 * directory follows.
+	 */
+	synchronized void logRemove(PolledDirectory directory) {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		try (BinaryStateOutput out = new BinaryStateOutput(Channels.newChannel(payload))) {
+			out.writeByte(REMOVE);
+			out.writeString(dirToStringFunction.apply(directory));
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		append(payload.toByteArray());
+		try {
+			forceLog();
+		} catch (IOException e) {
+			LOG.error("Unable to force: " + logFile, e);
+		}
+	}
+
+	/*
+	 * A record that could not be appended completely is cut off again, as
+	 * records after it would not be replayed.
+	 */
+	private void append(byte[] payload) {
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+		record.putInt(payload.length).putInt((int) crc32(payload)).put(payload).flip();
+		long start = -1;
+		try {
+			openLogIfNeeded();
+			start = log.position();
+			while (record.hasRemaining()) {
+				log.write(record);
+			}
+			isLogForced = false;
+		} catch (IOException e) {
+			LOG.error("Unable to append to: " + logFile, e);
+			truncateLog(start);
+		}
+	}
+
+	private void truncateLog(long size) {
+		if (log != null && size >= 0) {
+			try {
+				log.truncate(size);
+				log.position(size);
+			} catch (IOException e) {
+				LOG.error("Unable to truncate: " + logFile, e);
+			}
+		}
+	}
+
+	private void openLogIfNeeded() throws IOException {
+		if (log != null) {
+			return;
+		}
+		if (validLogSize < 0) {
+			validLogSize = replayLog(new HashMap<>());
+		}
+		Files.createDirectories(logFile.toAbsolutePath().getParent());
+		log = FileChannel.open(logFile, CREATE, WRITE);
+		log.truncate(validLogSize);
+		log.position(validLogSize);
+	}
+
+	/**
+	 * Forces the records appended since the previous call to disk, and compacts the
+	 * log when due.
+	 */
+	synchronized void endOfCycle() {
+		cyclesSinceSnapshot++;
+		if (log == null) {
+			return;
+		}
+		try {
+			forceLog();
+			if (cyclesSinceSnapshot >= cyclesBetweenSnapshots || log.size() >= maxLogSizeInBytes) {
+				compact();
+			}
+		} catch (IOException e) {
+			LOG.error("Unable to checkpoint state to: " + logFile, e);
+		}
+	}
+
+	private void forceLog() throws IOException {
+		if (log != null && !isLogForced) {
+			log.force(false);
+			isLogForced = true;
+		}
+	}
+
+	private void compact() throws IOException {
+		Map<String, Map<String, CachedFileElement>> state = readState();
+		Map<String, Collection<CachedFileElement>> snapshot = new HashMap<>();
+		state.forEach((directory, files) -> snapshot.put(directory, files.values()));
+		writeSnapshot(snapshot);
+		LOG.debug("Compacted {} bytes of {} into: {}", validLogSize, logFile, snapshotFile);
+	}
+
+	@Override
+	public synchronized void writeData(Map<PolledDirectory, Set<CachedFileElement>> data) {
+		try {
+			Map<String, Collection<CachedFileElement>> snapshot = new HashMap<>();
+			data.forEach((directory, files) -> snapshot.put(dirToStringFunction.apply(directory), files));
+			writeSnapshot(snapshot);
+			if (log != null) {
+				log.close();
+				log = null;
+			}
+			Files.deleteIfExists(logFile);
+			LOG.info("Persisted state of {} directories [in {}]", data.size(), snapshotFile);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to persist state to: " + snapshotFile, e);
+		}
+	}
+
+	/*
+	 * The log is emptied only once the new snapshot has replaced the old one.
+	 */
+	private void writeSnapshot(Map<String, Collection<CachedFileElement>> state) throws IOException {
+		AtomicFileWriter.write(snapshotFile, false, channel -> {
+			BinaryStateFileOutput out = new BinaryStateFileOutput(channel);
+			BinaryFilePersister.writeState(out, state);
+			out.flush();
+		});
+		if (log != null) {
+			log.truncate(0);
+			log.position(0);
+			log.force(false);
+		} else {
+			Files.deleteIfExists(logFile);
+		}
+		validLogSize = 0;
+		isLogForced = true;
+		cyclesSinceSnapshot = 0;
+	}
+
+	private static long crc32(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+}
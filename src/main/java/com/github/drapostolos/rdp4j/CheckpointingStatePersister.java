@@ -0,0 +1,77 @@
+package com.github.drapostolos.rdp4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/*
+ * Logs the changes of each poll-cycle to a CheckpointingFilePersister, on top
+ * of persisting the full state at stop. The initial content of a directory is
+ * only logged when it has no persisted state, otherwise the changes since the
+ * persisted state are logged like those of any other poll-cycle. The removal
+ * of a directory is logged too, and changes of a poll of the directory still
+ * running when it was removed are not.
+ */
+class CheckpointingStatePersister extends StatePersister
+		implements InitialContentListener, BatchDirectoryListener, PollCycleListener, DirectoryRemovalListener {
+	private final CheckpointingFilePersister persister;
+	private final Set<PolledDirectory> restoredDirectories = ConcurrentHashMap.newKeySet();
+	private final Set<PolledDirectory> removedDirectories = ConcurrentHashMap.newKeySet();
+
+	CheckpointingStatePersister(CheckpointingFilePersister persister) {
+		super(persister);
+		this.persister = persister;
+	}
+
+	@Override
+	public void beforeStart(BeforeStartEvent event) {
+		if (persister.containsData()) {
+			persister.readData().forEach((directory, files) -> {
+				event.addPolledDirectory(directory, files);
+				// An empty previous state fires no changes in the first poll-cycle.
+				if (!files.isEmpty()) {
+					restoredDirectories.add(directory);
+				}
+			});
+		}
+	}
+
+	@Override
+	public void initialContent(InitialContentEvent event) {
+		// A removed directory may be added again.
+		removedDirectories.remove(event.getPolledDirectory());
+		if (!restoredDirectories.remove(event.getPolledDirectory())) {
+			persister.logReplace(event.getPolledDirectory(), event.getCachedFileElements());
+		}
+	}
+
+	@Override
+	public void directoryChanged(DirectoryChangedEvent event) {
+		if (removedDirectories.contains(event.getPolledDirectory())) {
+			return;
+		}
+		List<CachedFileElement> puts = new ArrayList<>(event.getAddedCachedFiles());
+		puts.addAll(event.getModifiedCachedFiles());
+		persister.logDelta(event.getPolledDirectory(), puts, event.getRemovedCachedFiles());
+	}
+
+	@Override
+	public void directoryRemoved(PolledDirectory directory) {
+		removedDirectories.add(directory);
+		restoredDirectories.remove(directory);
+		persister.logRemove(directory);
+	}
+
+	@Override
+	public void beforePollingCycle(BeforePollingCycleEvent event) {
+		// do nothing
+	}
+
+	@Override
+	public void afterPollingCycle(AfterPollingCycleEvent event) {
+		persister.endOfCycle();
+	}
+}
@@ -0,0 +1,311 @@
+package com.github.drapostolos.rdp4j;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * An immutable listing of a directory, stored in a few primitive arrays instead
+ * of one object graph per file. The UTF-8 encoded names are sorted and
+ * concatenated in a single byte array, with a parallel array of offsets into it,
+ * a parallel array of last modified times, and a bit per file telling if it is a
+ * directory. A file costs 12 bytes plus the bytes of its name, instead of the
+ * four objects and map entry of a {@link FileElementAndCache}.
+ * <p>
+ * Files are looked up by name with a binary search over the sorted names.
+ * {@link #get(int)} creates a new {@link CachedFileElement} on each call.
+ */
+final class CompactSnapshot {
+    static final CompactSnapshot EMPTY = new CompactSnapshot(new byte[0], new int[1], new long[0], new BitSet());
+    private final byte[] names;
+    private final int[] offsets;
+    private final long[] lastModified;
+    private final BitSet directories;
+
+    private CompactSnapshot(byte[] names, int[] offsets, long[] lastModified, BitSet directories) {
+        this.names = names;
+        this.offsets = offsets;
+        this.lastModified = lastModified;
+        this.directories = directories;
+    }
+
+    /*
+     * Files with the same name as a file before them are left out.
+     */
+    static CompactSnapshot of(Collection<? extends CachedFileElement> files) {
+        Encoded[] encoded = new Encoded[files.size()];
+        int size = 0;
+        for (CachedFileElement file : files) {
+            encoded[size++] = new Encoded(encode(file.getName()), file);
+        }
+        // A stable sort, so the first of two equal names comes first.
+        Arrays.sort(encoded, (a, b) -> compare(a.name, 0, a.name.length, b.name));
+        int distinct = 0;
+        int totalLength = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || !Arrays.equals(encoded[distinct - 1].name, encoded[i].name)) {
+                encoded[distinct++] = encoded[i];
+                totalLength += encoded[i].name.length;
+            }
+        }
+        byte[] names = new byte[totalLength];
+        int[] offsets = new int[distinct + 1];
+        long[] lastModified = new long[distinct];
+        BitSet directories = new BitSet(distinct);
+        for (int i = 0; i < distinct; i++) {
+            byte[] name = encoded[i].name;
+            System.arraycopy(name, 0, names, offsets[i], name.length);
+            offsets[i + 1] = offsets[i] + name.length;
+            lastModified[i] = encoded[i].file.lastModified();
+            directories.set(i, encoded[i].file.isDirectory());
+        }
+        return new CompactSnapshot(names, offsets, lastModified, directories);
+    }
+
+    /**
+     * Returns a snapshot of the retained files of this snapshot and the given
+     * files, where a given file replaces a retained file with the same name. The
+     * names of the retained files are copied as they are, only the given files
+     * are encoded. So the cost follows the number of given files, apart from
+     * copying the arrays.
+     *
+     * @param retained the indexes of the files of this snapshot to keep.
+     */
+    CompactSnapshot merge(BitSet retained, Collection<? extends CachedFileElement> files) {
+        CompactSnapshot other = of(files);
+        Builder builder = new Builder(retained.cardinality() + other.size(), names.length + other.names.length);
+        int index = retained.nextSetBit(0);
+        int otherIndex = 0;
+        while (index >= 0 || otherIndex < other.size()) {
+            int comparison;
+            if (index < 0) {
+                comparison = 1;
+            } else if (otherIndex == other.size()) {
+                comparison = -1;
+            } else {
+                comparison = compare(names, offsets[index], offsets[index + 1],
+                        other.names, other.offsets[otherIndex], other.offsets[otherIndex + 1]);
+            }
+            if (comparison < 0) {
+                builder.add(this, index);
+                index = retained.nextSetBit(index + 1);
+            } else {
+                builder.add(other, otherIndex++);
+                if (comparison == 0) {
+                    index = retained.nextSetBit(index + 1);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static final class Builder {
+        private final byte[] names;
+        private final int[] offsets;
+        private final long[] lastModified;
+        private final BitSet directories = new BitSet();
+        private int size = 0;
+
+        private Builder(int maxSize, int maxNamesLength) {
+            names = new byte[maxNamesLength];
+            offsets = new int[maxSize + 1];
+            lastModified = new long[maxSize];
+        }
+
+        private void add(CompactSnapshot snapshot, int index) {
+            int from = snapshot.offsets[index];
+            int length = snapshot.offsets[index + 1] - from;
+            System.arraycopy(snapshot.names, from, names, offsets[size], length);
+            offsets[size + 1] = offsets[size] + length;
+            lastModified[size] = snapshot.lastModified[index];
+            directories.set(size, snapshot.directories.get(index));
+            size++;
+        }
+
+        private CompactSnapshot build() {
+            return new CompactSnapshot(Arrays.copyOf(names, offsets[size]), Arrays.copyOf(offsets, size + 1),
+                    Arrays.copyOf(lastModified, size), directories);
+        }
+    }
+
+    private static final class Encoded {
+        private final byte[] name;
+        private final CachedFileElement file;
+
+        private Encoded(byte[] name, CachedFileElement file) {
+            this.name = name;
+            this.file = file;
+        }
+    }
+
+    int size() {
+        return lastModified.length;
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the index of the file with the given name, or a negative value if
+     *         there is no such file.
+     */
+    int indexOf(String name) {
+        int low = 0;
+        int high = size() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compare(names, offsets[middle], offsets[middle + 1], name);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return a negative value, zero, or a positive value if the name of the file at
+     *         the given index is less than, equal to, or greater than the given
+     *         name, in the order of the snapshot.
+     */
+    int compareName(int index, String name) {
+        return compare(names, offsets[index], offsets[index + 1], name);
+    }
+
+    private static byte[] encode(String name) {
+        return name.getBytes(UTF_8);
+    }
+
+    /**
+     * Compares names in the order of the snapshot, i.e. by code point, without
+     * encoding them.
+     */
+    static int compare(String name, String otherName) {
+        int i = 0;
+        int j = 0;
+        while (i < name.length() && j < otherName.length()) {
+            int codePoint = codePointAt(name, i);
+            int otherCodePoint = codePointAt(otherName, j);
+            if (codePoint != otherCodePoint) {
+                return codePoint - otherCodePoint;
+            }
+            i += Character.charCount(codePoint);
+            j += Character.charCount(otherCodePoint);
+        }
+        return (name.length() - i) - (otherName.length() - j);
+    }
+
+    /*
+     * Unpaired surrogates are encoded as '?', as by String.getBytes(UTF_8).
+     */
+    private static int codePointAt(String name, int index) {
+        int codePoint = name.codePointAt(index);
+        return codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE ? '?' : codePoint;
+    }
+
+    String getName(int index) {
+        return new String(names, offsets[index], offsets[index + 1] - offsets[index], UTF_8);
+    }
+
+    long lastModified(int index) {
+        return lastModified[index];
+    }
+
+    CachedFileElement get(int index) {
+        return CachedFileElement.of(getName(index), lastModified[index], directories.get(index));
+    }
+
+    /**
+     * @return a read-only view of all files, in the order of their names.
+     */
+    List<FileElementAndCache> asFiles() {
+        return new AbstractList<FileElementAndCache>() {
+
+            @Override
+            public FileElementAndCache get(int index) {
+                CachedFileElement file = CompactSnapshot.this.get(index);
+                return new FileElementAndCache(file, file);
+            }
+
+            @Override
+            public int size() {
+                return CompactSnapshot.this.size();
+            }
+        };
+    }
+
+    /*
+     * Compares bytes from..to of the arena with the given key, as unsigned
+     * bytes, which orders UTF-8 encoded names by code point.
+     */
+    private static int compare(byte[] arena, int from, int to, byte[] key) {
+        return compare(arena, from, to, key, 0, key.length);
+    }
+
+    /*
+     * Same as above, with the key encoded as it is compared.
+     */
+    private static int compare(byte[] arena, int from, int to, String key) {
+        int position = from;
+        for (int i = 0; i < key.length(); ) {
+            int codePoint = codePointAt(key, i);
+            i += Character.charCount(codePoint);
+            int length = utf8Length(codePoint);
+            for (int k = 0; k < length; k++) {
+                if (position == to) {
+                    return -1;
+                }
+                int comparison = (arena[position++] & 0xff) - utf8Byte(codePoint, length, k);
+                if (comparison != 0) {
+                    return comparison;
+                }
+            }
+        }
+        return to - position;
+    }
+
+    private static int utf8Length(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        } else if (codePoint < 0x800) {
+            return 2;
+        } else if (codePoint < 0x10000) {
+            return 3;
+        }
+        return 4;
+    }
+
+    /*
+     * The k:th byte of the UTF-8 encoding of the given code point, of the given
+     * length.
+     */
+    private static int utf8Byte(int codePoint, int length, int k) {
+        if (length == 1) {
+            return codePoint;
+        }
+        int shift = 6 * (length - 1 - k);
+        if (k == 0) {
+            return (0xff00 >> length & 0xff) | codePoint >> shift;
+        }
+        return 0x80 | (codePoint >> shift & 0x3f);
+    }
+
+    private static int compare(byte[] arena, int from, int to, byte[] otherArena, int otherFrom, int otherTo) {
+        int length = Math.min(to - from, otherTo - otherFrom);
+        for (int i = 0; i < length; i++) {
+            int comparison = (arena[from + i] & 0xff) - (otherArena[otherFrom + i] & 0xff);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return (to - from) - (otherTo - otherFrom);
+    }
+}
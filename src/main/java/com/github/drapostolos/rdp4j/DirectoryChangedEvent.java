@@ -0,0 +1,92 @@
+package com.github.drapostolos.rdp4j;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+import com.github.drapostolos.rdp4j.spi.FileElement;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * An event that provides all files added, removed and modified in the
+ * {@link PolledDirectory} during one poll-cycle. The lists are in listing order,
+ * and cannot be modified.
+ *
+ * @see BatchDirectoryListener
+ * @see <a href="https://github.com/drapostolos/rdp4j/wiki/User-Guide">User-Guide</a>
+ */
+public final class DirectoryChangedEvent extends EventExposingPolledDirectory {
+    private final List<FileElementAndCache> added;
+    private final List<FileElementAndCache> removed;
+    private final List<FileElementAndCache> modified;
+
+    DirectoryChangedEvent(DirectoryPoller dp, PolledDirectory directory, Collection<FileElementAndCache> added,
+            Collection<FileElementAndCache> removed, Collection<FileElementAndCache> modified) {
+        super(dp, directory);
+        this.added = new ArrayList<>(added);
+        this.removed = new ArrayList<>(removed);
+        this.modified = new ArrayList<>(modified);
+    }
+
+    /**
+     * @return the {@link FileElement}s added in this {@link PolledDirectory}.
+     */
+    public List<FileElement> getAddedFiles() {
+        return view(added, FileElementAndCache::getFileElement);
+    }
+
+    /**
+     * @return the {@link FileElement}s removed from this {@link PolledDirectory}.
+     */
+    public List<FileElement> getRemovedFiles() {
+        return view(removed, FileElementAndCache::getFileElement);
+    }
+
+    /**
+     * @return the {@link FileElement}s modified in this {@link PolledDirectory}.
+     */
+    public List<FileElement> getModifiedFiles() {
+        return view(modified, FileElementAndCache::getFileElement);
+    }
+
+    /**
+     * @return the {@link CachedFileElement}s added in this {@link PolledDirectory}.
+     */
+    public List<CachedFileElement> getAddedCachedFiles() {
+        return view(added, FileElementAndCache::getCachedFileElement);
+    }
+
+    /**
+     * @return the {@link CachedFileElement}s removed from this {@link PolledDirectory}.
+     */
+    public List<CachedFileElement> getRemovedCachedFiles() {
+        return view(removed, FileElementAndCache::getCachedFileElement);
+    }
+
+    /**
+     * @return the {@link CachedFileElement}s modified in this {@link PolledDirectory}.
+     */
+    public List<CachedFileElement> getModifiedCachedFiles() {
+        return view(modified, FileElementAndCache::getCachedFileElement);
+    }
+
+    /*
+     * A read-only view, to not copy all files of a large change set once more.
+     */
+    private static <T> List<T> view(List<FileElementAndCache> files, Function<FileElementAndCache, T> mapper) {
+        return new AbstractList<T>() {
+
+            @Override
+            public T get(int index) {
+                return mapper.apply(files.get(index));
+            }
+
+            @Override
+            public int size() {
+                return files.size();
+            }
+        };
+    }
+}
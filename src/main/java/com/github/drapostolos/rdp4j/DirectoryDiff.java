@@ -0,0 +1,189 @@
+package com.github.drapostolos.rdp4j;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Computes the files added, removed and modified between the previous and
+ * current listing of a directory.
+ * <p>
+ * The current listing is walked once, with a single lookup per file in the
+ * previous listing. The previous listing is only walked when it is known to
+ * contain removed files. No copies of the listings are made, and the result
+ * lists are reused between poll-cycles.
+ * <p>
+ * Against a {@link CompactSnapshot}, the diff is computed while the current
+ * listing is visited, so the current listing need not be kept at all.
+ */
+final class DirectoryDiff {
+    private final List<FileElementAndCache> added = new ArrayList<>();
+    private final List<FileElementAndCache> removed = new ArrayList<>();
+    private final List<FileElementAndCache> modified = new ArrayList<>();
+    // State of a diff computed while visiting the current listing.
+    private CompactSnapshot snapshot = CompactSnapshot.EMPTY;
+    private final BitSet visited = new BitSet();
+    private final Set<String> addedNames = new HashSet<>();
+    private boolean isMerging;
+    private boolean isListingFoundUnsorted;
+    private int cursor;
+    private String lastName;
+
+    void compute(Map<String, FileElementAndCache> previous, Map<String, FileElementAndCache> current) {
+        clear();
+        int unremoved = 0;
+        for (FileElementAndCache file : current.values()) {
+            FileElementAndCache previousFile = previous.get(file.getName());
+            if (previousFile == null) {
+                added.add(file);
+            } else {
+                unremoved++;
+                if (previousFile.lastModified() != file.lastModified()) {
+                    modified.add(file);
+                }
+            }
+        }
+        if (unremoved < previous.size()) {
+            for (FileElementAndCache file : previous.values()) {
+                if (!current.containsKey(file.getName())) {
+                    removed.add(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts computing the diff against a compact snapshot while the current
+     * listing is visited, one file at a time, see {@link #visit(FileElementAndCache)}
+     * and {@link #finish()}. The current listing is not kept: the files of the
+     * snapshot visited are marked, and the files not marked are the removed files.
+     * <p>
+     * A listing sorted in the order of the snapshot is merge-joined with it, in
+     * one pass over both, without lookups. Once the listing turns out not to be
+     * sorted, the remaining files are looked up instead.
+     */
+    void start(CompactSnapshot previous, boolean isListingSorted) {
+        clear();
+        snapshot = previous;
+        visited.clear();
+        addedNames.clear();
+        isMerging = isListingSorted;
+        isListingFoundUnsorted = false;
+        cursor = 0;
+        lastName = null;
+    }
+
+    /**
+     * @return <code>false</code> if a file with the same name is already
+     *         visited, in which case the given file is left out.
+     */
+    boolean visit(FileElementAndCache file) {
+        String name = file.getName();
+        if (isMerging && lastName != null && CompactSnapshot.compare(lastName, name) >= 0) {
+            isMerging = false;
+            isListingFoundUnsorted = true;
+            added.forEach(addedFile -> addedNames.add(addedFile.getName()));
+        }
+        int index;
+        if (isMerging) {
+            lastName = name;
+            int comparison = -1;
+            while (cursor < snapshot.size() && (comparison = snapshot.compareName(cursor, name)) < 0) {
+                cursor++;
+            }
+            index = comparison == 0 ? cursor++ : -1;
+        } else {
+            index = snapshot.indexOf(name);
+        }
+        if (index < 0) {
+            // While merging, names are unique as they are in strict order.
+            if (!isMerging && !addedNames.add(name)) {
+                return false;
+            }
+            added.add(file);
+        } else {
+            if (visited.get(index)) {
+                return false;
+            }
+            visited.set(index);
+            if (snapshot.lastModified(index) != file.lastModified()) {
+                modified.add(file);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Completes the diff started by {@link #start(CompactSnapshot, boolean)},
+     * once all files are visited.
+     */
+    void finish() {
+        for (int i = visited.nextClearBit(0); i < snapshot.size(); i = visited.nextClearBit(i + 1)) {
+            addRemoved(snapshot, i);
+        }
+        addedNames.clear();
+    }
+
+    /**
+     * @return <code>true</code> if the listing of the last diff was declared
+     *         sorted, but was not.
+     */
+    boolean isListingFoundUnsorted() {
+        return isListingFoundUnsorted;
+    }
+
+    /**
+     * @return the snapshot of the current listing, built from the snapshot the
+     *         diff was computed against, and the added and modified files.
+     */
+    CompactSnapshot toSnapshot() {
+        List<CachedFileElement> changed = new ArrayList<>(added.size() + modified.size());
+        added.forEach(file -> changed.add(file.getCachedFileElement()));
+        modified.forEach(file -> changed.add(file.getCachedFileElement()));
+        return snapshot.merge(visited, changed);
+    }
+
+    private void addRemoved(CompactSnapshot previous, int index) {
+        CachedFileElement file = previous.get(index);
+        removed.add(new FileElementAndCache(file, file));
+    }
+
+    /**
+     * @return the files in the current listing, but not in the previous listing.
+     */
+    List<FileElementAndCache> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return the files in the previous listing, but not in the current listing.
+     */
+    List<FileElementAndCache> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return the files in both listings, with different last modified time.
+     */
+    List<FileElementAndCache> getModified() {
+        return modified;
+    }
+
+    void clear() {
+        added.clear();
+        removed.clear();
+        modified.clear();
+    }
+
+    boolean hasDiff() {
+        return !added.isEmpty() || !removed.isEmpty() || !modified.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "Removed: " + removed + ", Added: " + added + ", Modified: " + modified;
+    }
+}
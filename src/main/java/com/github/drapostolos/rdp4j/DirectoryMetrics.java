@@ -0,0 +1,285 @@
+package com.github.drapostolos.rdp4j;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+import com.github.drapostolos.rdp4j.spi.StreamingPolledDirectory;
+
+/**
+ * An immutable snapshot of the measurements of the polls of a single
+ * {@link PolledDirectory}, see {@link PollerMetrics}.
+ * <p>
+ * Values named "last" are measured in the last poll of the directory, values
+ * named "total" are summed over all its polls. Times are in nanoseconds.
+ *
+ * @see DirectoryPoller#getMetrics()
+ */
+public final class DirectoryMetrics {
+
+    private final PolledDirectory directory;
+    private final long pollCount;
+    private final long skippedListingCount;
+    private final long listingCount;
+    private final long lastPollNanos;
+    private final long totalPollNanos;
+    private final long maxPollNanos;
+    private final long lastListingNanos;
+    private final long totalListingNanos;
+    private final long lastLookupNanos;
+    private final long totalLookupNanos;
+    private final long lastListenerNanos;
+    private final long totalListenerNanos;
+    private final int lastEntryCount;
+    private final int lastFilteredOutCount;
+    private final int trackedFileCount;
+    private final int lastAddedCount;
+    private final int lastRemovedCount;
+    private final int lastModifiedCount;
+    private final long totalAddedCount;
+    private final long totalRemovedCount;
+    private final long totalModifiedCount;
+    private final long ioErrorCount;
+    private final long recoverableErrorCount;
+    private final boolean isIoErrorActive;
+
+    DirectoryMetrics(PolledDirectory directory, DirectoryStats stats) {
+        this.directory = directory;
+        pollCount = stats.pollCount;
+        skippedListingCount = stats.skippedListingCount;
+        listingCount = stats.listingCount;
+        lastPollNanos = stats.lastPollNanos;
+        totalPollNanos = stats.totalPollNanos;
+        maxPollNanos = stats.maxPollNanos;
+        lastListingNanos = stats.lastListingNanos;
+        totalListingNanos = stats.totalListingNanos;
+        lastLookupNanos = stats.lastLookupNanos;
+        totalLookupNanos = stats.totalLookupNanos;
+        lastListenerNanos = stats.lastListenerNanos;
+        totalListenerNanos = stats.totalListenerNanos;
+        lastEntryCount = stats.lastEntryCount;
+        lastFilteredOutCount = stats.lastFilteredOutCount;
+        trackedFileCount = stats.trackedFileCount;
+        lastAddedCount = stats.lastAddedCount;
+        lastRemovedCount = stats.lastRemovedCount;
+        lastModifiedCount = stats.lastModifiedCount;
+        totalAddedCount = stats.totalAddedCount;
+        totalRemovedCount = stats.totalRemovedCount;
+        totalModifiedCount = stats.totalModifiedCount;
+        ioErrorCount = stats.ioErrorCount;
+        recoverableErrorCount = stats.recoverableErrorCount;
+        isIoErrorActive = stats.isIoErrorActive;
+    }
+
+    /**
+     * @return the measured directory.
+     */
+    public PolledDirectory getPolledDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the number of times the directory has been polled.
+     */
+    public long getPollCount() {
+        return pollCount;
+    }
+
+    /**
+     * @return the number of polls that did not list the directory, as its change
+     *         token was unchanged, see {@link PolledDirectory#getChangeToken()}.
+     */
+    public long getSkippedListingCount() {
+        return skippedListingCount;
+    }
+
+    /**
+     * Returns the number of polls that listed the directory, i.e. the polls whose
+     * times are summed in {@link #getTotalListingNanos()} and
+     * {@link #getTotalLookupNanos()}. Polls that skipped the listing, or failed to
+     * list the directory, are not counted.
+     *
+     * @return the number of times the directory has been listed.
+     */
+    public long getListingCount() {
+        return listingCount;
+    }
+
+    /**
+     * @return the time of the last poll, from listing the directory to notifying
+     *         the listeners of its changes.
+     */
+    public long getLastPollNanos() {
+        return lastPollNanos;
+    }
+
+    /**
+     * @return the time of all polls.
+     */
+    public long getTotalPollNanos() {
+        return totalPollNanos;
+    }
+
+    /**
+     * @return the time of the slowest poll.
+     */
+    public long getMaxPollNanos() {
+        return maxPollNanos;
+    }
+
+    /**
+     * Returns the time spent listing the directory in the last poll, i.e. in
+     * {@link PolledDirectory#listFiles()}. Files of a {@link StreamingPolledDirectory}
+     * are filtered, and their last modified times looked up, while they are listed,
+     * so for these this time includes the time of filtering and lookups not done in
+     * parallel. With {@link DirectoryPollerBuilder#enableCompactPreviousState()} it
+     * includes the time of comparing the files with the previous state too.
+     *
+     * @return the listing time of the last poll, or zero if the directory was not
+     *         listed.
+     */
+    public long getLastListingNanos() {
+        return lastListingNanos;
+    }
+
+    /**
+     * @return the time spent listing the directory in all polls.
+     */
+    public long getTotalListingNanos() {
+        return totalListingNanos;
+    }
+
+    /**
+     * Returns the time spent filtering the listed files and looking up their
+     * last modified times in the last poll. Lookups done in parallel are measured
+     * as the time waited for them, not the sum of their times.
+     *
+     * @return the lookup time of the last poll, or zero if the directory was not
+     *         listed.
+     */
+    public long getLastLookupNanos() {
+        return lastLookupNanos;
+    }
+
+    /**
+     * @return the time spent filtering files and looking up last modified times
+     *         in all polls.
+     */
+    public long getTotalLookupNanos() {
+        return totalLookupNanos;
+    }
+
+    /**
+     * Returns the time spent notifying listeners of the changes, initial content
+     * and IO errors of the directory in the last poll. Listeners wrapped in an
+     * {@link AsyncListener} are measured as the time to queue the events.
+     *
+     * @return the listener time of the last poll.
+     */
+    public long getLastListenerNanos() {
+        return lastListenerNanos;
+    }
+
+    /**
+     * @return the time spent notifying listeners in all polls.
+     */
+    public long getTotalListenerNanos() {
+        return totalListenerNanos;
+    }
+
+    /**
+     * @return the number of files listed, before filtering, the last time the
+     *         directory was listed.
+     */
+    public int getLastEntryCount() {
+        return lastEntryCount;
+    }
+
+    /**
+     * @return the number of files rejected by the {@link FileFilter} the last time
+     *         the directory was listed.
+     */
+    public int getLastFilteredOutCount() {
+        return lastFilteredOutCount;
+    }
+
+    /**
+     * @return the number of files kept as the state of the directory after the
+     *         last poll, i.e. the files compared against in the next poll.
+     */
+    public int getTrackedFileCount() {
+        return trackedFileCount;
+    }
+
+    /**
+     * @return the number of files found added in the last poll.
+     */
+    public int getLastAddedCount() {
+        return lastAddedCount;
+    }
+
+    /**
+     * @return the number of files found removed in the last poll.
+     */
+    public int getLastRemovedCount() {
+        return lastRemovedCount;
+    }
+
+    /**
+     * @return the number of files found modified in the last poll.
+     */
+    public int getLastModifiedCount() {
+        return lastModifiedCount;
+    }
+
+    /**
+     * @return the number of files found added in all polls.
+     */
+    public long getTotalAddedCount() {
+        return totalAddedCount;
+    }
+
+    /**
+     * @return the number of files found removed in all polls.
+     */
+    public long getTotalRemovedCount() {
+        return totalRemovedCount;
+    }
+
+    /**
+     * @return the number of files found modified in all polls.
+     */
+    public long getTotalModifiedCount() {
+        return totalModifiedCount;
+    }
+
+    /**
+     * @return the number of {@link IoErrorRaisedEvent}s fired for the directory.
+     */
+    public long getIoErrorCount() {
+        return ioErrorCount;
+    }
+
+    /**
+     * @return the number of polls skipped as the directory threw a
+     *         {@link DirectoryPollerException}.
+     */
+    public long getRecoverableErrorCount() {
+        return recoverableErrorCount;
+    }
+
+    /**
+     * @return <code>true</code> if an {@link IoErrorRaisedEvent} has been fired for
+     *         the directory, without a {@link IoErrorCeasedEvent} since.
+     */
+    public boolean isIoErrorActive() {
+        return isIoErrorActive;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[directory=%s, polls=%d, lastPollNanos=%d, lastListingNanos=%d, "
+                + "lastLookupNanos=%d, lastListenerNanos=%d, entries=%d, filteredOut=%d, tracked=%d, "
+                + "added=%d, removed=%d, modified=%d, ioErrors=%d, ioErrorActive=%s]",
+                getClass().getSimpleName(), directory, pollCount, lastPollNanos, lastListingNanos,
+                lastLookupNanos, lastListenerNanos, lastEntryCount, lastFilteredOutCount, trackedFileCount,
+                lastAddedCount, lastRemovedCount, lastModifiedCount, ioErrorCount, isIoErrorActive);
+    }
+}
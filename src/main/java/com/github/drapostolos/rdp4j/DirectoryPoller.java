@@ -8,10 +8,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import com.github.drapostolos.rdp4j.spi.PolledDirectory;
 
@@ -46,14 +47,23 @@ public class DirectoryPoller {
     private final long pollingIntervalInMillis;
     private final String threadName;
     private final CountDownLatch latch = new CountDownLatch(1);
-    private final ScheduledExecutorService executor;
+    private final ScheduledThreadPoolExecutor executor;
     private ScheduledRunnable scheduledRunnable;
 
     // Below are passed to PollerTask and changed by unit tests
     ListenerNotifier notifier;
     boolean fileAddedEventEnabledForInitialContent;
     boolean parallelDirectoryPollingEnabled;
+    PollingThreadPool pollingThreadPool;
+    boolean virtualThreadPollingEnabled;
+    boolean pipelinedPollingEnabled;
+    int fileAttributeLookupParallelism;
+    boolean adaptivePollingEnabled;
+    long maxPollingIntervalInMillis;
+    boolean compactPreviousStateEnabled;
     Map<PolledDirectory, Set<CachedFileElement>> directories;
+    Map<PolledDirectory, DirectorySchedule> schedules;
+    Map<PolledDirectory, Supplier<Set<CachedFileElement>>> lazyPreviousStates;
 
 	/**
      * @return a new {@link DirectoryPollerBuilder}.
@@ -66,11 +76,20 @@ public class DirectoryPoller {
     DirectoryPoller(ListenerNotifier notifier, DirectoryPollerBuilder builder) {
         // First copy values from builder...
         directories = new HashMap<>(builder.directories);
+        schedules = new HashMap<>(builder.schedules);
+        lazyPreviousStates = new HashMap<>(builder.lazyPreviousStates);
         filter = builder.filter;
         pollingIntervalInMillis = builder.pollingIntervalInMillis;
         threadName = addCounterIfDefaultThreadName(builder.threadName);
         fileAddedEventEnabledForInitialContent = builder.fileAddedEventEnabledForInitialContent;
         parallelDirectoryPollingEnabled = builder.parallelDirectoryPollingEnabled;
+        pollingThreadPool = builder.pollingThreadPool;
+        virtualThreadPollingEnabled = builder.virtualThreadPollingEnabled;
+        pipelinedPollingEnabled = builder.pipelinedPollingEnabled;
+        fileAttributeLookupParallelism = builder.fileAttributeLookupParallelism;
+        adaptivePollingEnabled = builder.adaptivePollingEnabled;
+        maxPollingIntervalInMillis = builder.maxPollingIntervalInMillis;
+        compactPreviousStateEnabled = builder.compactPreviousStateEnabled;
     	this.notifier = notifier;
 
         // ...then check mandatory values
@@ -83,7 +102,7 @@ public class DirectoryPoller {
                     + "before you can start the %s.";
             throw new IllegalStateException(String.format(message, pollerName, pollerName, builderName, pollerName));
         }
-        executor = Executors.newScheduledThreadPool(1, new ThreadFactory() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
             @Override
             public Thread newThread(Runnable r) {
                 Thread t = new Thread(r);
@@ -91,6 +110,9 @@ public class DirectoryPoller {
                 return t;
             }
         });
+        // Don't wait for directories re-armed in pipelined mode, when stopped.
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        executor = scheduler;
     }
 
     private String addCounterIfDefaultThreadName(String threadName) {
@@ -100,9 +122,21 @@ public class DirectoryPoller {
         return threadName;
 	}
 
+    /*
+     * Directories with an interval of their own are re-armed on the scheduler,
+     * also in periodic mode. Then a second scheduler thread keeps a long
+     * poll-cycle from holding them up, unless directories are not to be polled
+     * in parallel.
+     */
     DirectoryPoller start() {
         scheduledRunnable = new ScheduledRunnable(this);
-        executor.scheduleAtFixedRate(scheduledRunnable, WITH_NO_DELAY, pollingIntervalInMillis, MILLISECONDS);
+        if (!pipelinedPollingEnabled && !scheduledRunnable.isPolledOnSchedulerThread()) {
+            executor.setCorePoolSize(2);
+        }
+        scheduledRunnable.startSelfScheduledPolling(executor);
+        if (!pipelinedPollingEnabled) {
+            executor.scheduleAtFixedRate(scheduledRunnable, WITH_NO_DELAY, pollingIntervalInMillis, MILLISECONDS);
+        }
         return this;
     }
 
@@ -168,6 +202,7 @@ public class DirectoryPoller {
      */
     public void stopAsyncNow() {
         executor.shutdownNow();
+        scheduledRunnable.shutdownNow();
         invokeShutdownTaskOnce();
     }
 
@@ -219,6 +254,17 @@ public class DirectoryPoller {
         return scheduledRunnable.getDirectories();
     }
 
+    /**
+     * Returns a snapshot of the measurements of this {@link DirectoryPoller}, and
+     * of each of its directories. Like which directories are slow to list, or
+     * have listeners that are slow to handle their events.
+     *
+     * @return the current {@link PollerMetrics} of this instance.
+     */
+    public PollerMetrics getMetrics() {
+        return scheduledRunnable.getMetrics();
+    }
+
     /**
      * @return the polling interval in milliseconds, as
      *         configured for this instance
@@ -291,6 +337,31 @@ public class DirectoryPoller {
         scheduledRunnable.addDirectory(directory);
     }
 
+    /**
+     * Adds the given <code>directory</code> into this instance, to be polled
+     * with its own interval and priority.
+     * The <code>directory</code> will be polled in the next coming poll-cycle.
+     * <p>
+     * Registering an already registered directory will be ignored.
+     * 
+     * @see DirectoryPollerBuilder#addPolledDirectory(PolledDirectory, long, TimeUnit, int)
+     * @param directory implementation of {@link PolledDirectory}.
+     * @param interval the interval between two polls of the <code>directory</code>.
+     * @param timeUnit the unit of the interval. Example: TimeUnit.MINUTES
+     * @param priority of directories due at the same time, those with higher priority are polled first.
+     * @throws NullPointerException if <code>directory</code> or <code>timeUnit</code> is null.
+     * @throws IllegalArgumentException if <code>interval</code> is negative.
+     */
+    public void addPolledDirectory(PolledDirectory directory, long interval, TimeUnit timeUnit, int priority) {
+        if (directory == null || timeUnit == null) {
+            throw new NullPointerException(NULL_ARGUMENT_ERROR);
+        }
+        if (interval < 0) {
+            throw new IllegalArgumentException("Argument 'interval' is negative: " + interval);
+        }
+        scheduledRunnable.addDirectory(directory, new DirectorySchedule(timeUnit.toMillis(interval), priority));
+    }
+
     /**
      * Removes the given <code>directory</code> from this instance.
      * The <code>directory</code> will be removed after any ongoing
@@ -340,6 +411,67 @@ public class DirectoryPoller {
         return parallelDirectoryPollingEnabled;
     }
 
+    /**
+     * @return <code>true</code> if this {@link DirectoryPoller} has
+     *         been configured to re-arm each directory as soon as its own
+     *         poll is done, otherwise false.
+     */
+    public boolean isPipelinedPollingEnabled() {
+        return pipelinedPollingEnabled;
+    }
+
+    /**
+     * @return the maximum number of file attribute lookups made at the same time,
+     *         or 0 if the attributes of listed files are looked up one by one.
+     */
+    public int getFileAttributeLookupParallelism() {
+        return fileAttributeLookupParallelism;
+    }
+
+    /**
+     * @return <code>true</code> if this {@link DirectoryPoller} has
+     *         been configured to poll its directories with virtual threads
+     *         (when supported by the Java runtime), otherwise false.
+     */
+    public boolean isVirtualThreadPollingEnabled() {
+        return virtualThreadPollingEnabled;
+    }
+
+    /**
+     * @return the {@link PollingThreadPool} this {@link DirectoryPoller} has been
+     *         configured to poll its directories with, or <code>null</code> if
+     *         it uses threads of its own.
+     */
+    public PollingThreadPool getPollingThreadPool() {
+        return pollingThreadPool;
+    }
+
+    /**
+     * @return <code>true</code> if this {@link DirectoryPoller} has
+     *         been configured to adapt the polling interval of each directory
+     *         to how often it changes, otherwise false.
+     */
+    public boolean isAdaptivePollingEnabled() {
+        return adaptivePollingEnabled;
+    }
+
+    /**
+     * @return the longest interval in milliseconds between two polls of an idle
+     *         directory, when adaptive polling is enabled.
+     */
+    public long getMaxPollingIntervalInMillis() {
+        return maxPollingIntervalInMillis;
+    }
+
+    /**
+     * @return <code>true</code> if this {@link DirectoryPoller} has
+     *         been configured to keep the state of its directories in a
+     *         compact representation, otherwise false.
+     */
+    public boolean isCompactPreviousStateEnabled() {
+        return compactPreviousStateEnabled;
+    }
+
     /**
      * @return <code>true</code> if this {@link DirectoryPoller} has
      *         been configured to notify {@link DirectoryListener#fileAdded(FileAddedEvent)}
@@ -13,6 +13,7 @@ import java.util.Set;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import com.github.drapostolos.rdp4j.spi.FileElement;
 import com.github.drapostolos.rdp4j.spi.Persister;
@@ -28,6 +29,8 @@ public final class DirectoryPollerBuilder {
     private static final String NULL_ARGUMENT_ERROR_MESSAGE = "null argument not allowed!";
     static final String DEFAULT_THREAD_NAME = "DirectoryPoller-";
     Map<PolledDirectory, Set<CachedFileElement>> directories = new HashMap<>();
+    Map<PolledDirectory, DirectorySchedule> schedules = new HashMap<>();
+    Map<PolledDirectory, Supplier<Set<CachedFileElement>>> lazyPreviousStates = new HashMap<>();
 
     // Optional settings, with default values:
     long pollingIntervalInMillis = 1000;
@@ -35,6 +38,13 @@ public final class DirectoryPollerBuilder {
     String threadName = DEFAULT_THREAD_NAME;
     boolean fileAddedEventEnabledForInitialContent = false;
     boolean parallelDirectoryPollingEnabled = false;
+    PollingThreadPool pollingThreadPool = null;
+    boolean virtualThreadPollingEnabled = false;
+    boolean pipelinedPollingEnabled = false;
+    int fileAttributeLookupParallelism = 0;
+    boolean adaptivePollingEnabled = false;
+    long maxPollingIntervalInMillis = 0;
+    boolean compactPreviousStateEnabled = false;
     Set<Rdp4jListener> listeners = new HashSet<Rdp4jListener>();
 
     DirectoryPollerBuilder() { // package-private access only.
@@ -56,20 +66,143 @@ public final class DirectoryPollerBuilder {
      */
 	public DirectoryPollerBuilder enableDefaultStatePersisting(Path persistedFile, 
 			Function<PolledDirectory, String> dirToString, Function<String, PolledDirectory> stringToDir) {
-        if (persistedFile == null) {
-            throw new NullPointerException(NULL_ARGUMENT_ERROR_MESSAGE);
+        checkPersistedFileArguments(persistedFile, dirToString, stringToDir);
+		return enableStatePersisting(new SerializeToFilePersister(persistedFile, stringToDir, dirToString));
+	}
+
+    /**
+     * Same as {@link #enableDefaultStatePersisting(Path, Function, Function)}, but a crash
+     * while persisting never leaves a partly written <code>file</code>. The state is
+     * written to a temporary file next to <code>file</code>, forced to disk, and then
+     * moved over <code>file</code>. The replaced file is kept as the previous generation
+     * (named as <code>file</code> with a ".prev" suffix), which is read if <code>file</code>
+     * cannot be read.
+     * <p>
+     * The state is written in the background, so {@link DirectoryPoller#stop()} does not
+     * wait for it. The JVM does not exit before the state is written. Hence, unlike with
+     * {@link #enableDefaultStatePersisting(Path, Function, Function)}, a failure to write
+     * the state is not thrown by {@link DirectoryPoller#stop()}, but logged on ERROR level.
+     * A {@link DirectoryPoller} started later on the same <code>file</code> waits for the
+     * write before reading the state.
+     *
+     * @see DirectoryPollerBuilder#enableStatePersisting(Persister)
+     *
+     * @param persistedFile the files where to store persisted data.
+     * @param dirToString a function that converts your {@link PolledDirectory} implementations to a string.
+     * @param stringToDir a function that converts a string (as produced by <code>dirToString</code>)
+     * to an implementation of your {@link PolledDirectory}.
+     * @return {@link DirectoryPollerBuilder}
+     */
+    public DirectoryPollerBuilder enableCrashSafeStatePersisting(Path persistedFile,
+            Function<PolledDirectory, String> dirToString, Function<String, PolledDirectory> stringToDir) {
+        checkPersistedFileArguments(persistedFile, dirToString, stringToDir);
+        return enableStatePersisting(new SerializeToFilePersister(persistedFile, stringToDir, dirToString, true));
+    }
+
+    /**
+     * Enables persisting of the {@link PolledDirectory}'s state to the given <code>file</code>,
+     * in a compact binary format. Faster to read and write, and smaller, than the format of
+     * {@link #enableDefaultStatePersisting(Path, Function, Function)}, which uses Java
+     * serialization. As this library has no knowledge how to convert your
+     * {@link PolledDirectory} implementation to and from a string, the client needs to 
+     * supply the converter functions {@code dirToString} and <code>stringToDir</code>.
+     * <p>
+     * Files written by {@link #enableDefaultStatePersisting(Path, Function, Function)}
+     * cannot be read, and vice versa.
+     * 
+     * @see DirectoryPollerBuilder#enableStatePersisting(Persister)
+     * 
+     * @param persistedFile the files where to store persisted data.
+     * @param dirToString a function that converts your {@link PolledDirectory} implementations to a string.
+     * @param stringToDir a function that converts a string (as produced by <code>dirToString</code>) 
+     * to an implementation of your {@link PolledDirectory}.
+     * @return {@link DirectoryPollerBuilder}
+     */
+    public DirectoryPollerBuilder enableBinaryStatePersisting(Path persistedFile,
+            Function<PolledDirectory, String> dirToString, Function<String, PolledDirectory> stringToDir) {
+        checkPersistedFileArguments(persistedFile, dirToString, stringToDir);
+        return enableStatePersisting(new BinaryFilePersister(persistedFile, stringToDir, dirToString));
+    }
+
+    /**
+     * Enables persisting of the {@link PolledDirectory}'s state to the given <code>file</code>,
+     * in the same format as {@link #enableBinaryStatePersisting(Path, Function, Function)}.
+     * At start, only the list of persisted directories is read. The persisted state of a
+     * directory is read from a memory-mapped region of the file the first time the
+     * directory is polled. This makes {@link #start()} return quickly, and keeps the heap
+     * used by persisted state proportional to the directories polled so far.
+     * <p>
+     * As the state of a directory is read after start, a state that cannot be read (e.g.
+     * a corrupt section of the file) does not fail {@link #start()}. Instead it stops the
+     * {@link DirectoryPoller} the first time the directory is polled, as a {@link PolledDirectory}
+     * throwing a {@link RuntimeException} does. The state of that directory is then persisted
+     * as empty, so its files are reported as initial content at the next start.
+     * 
+     * @see DirectoryPollerBuilder#enableStatePersisting(Persister)
+     * 
+     * @param persistedFile the files where to store persisted data.
+     * @param dirToString a function that converts your {@link PolledDirectory} implementations to a string.
+     * @param stringToDir a function that converts a string (as produced by <code>dirToString</code>) 
+     * to an implementation of your {@link PolledDirectory}.
+     * @return {@link DirectoryPollerBuilder}
+     */
+    public DirectoryPollerBuilder enableMemoryMappedStatePersisting(Path persistedFile,
+            Function<PolledDirectory, String> dirToString, Function<String, PolledDirectory> stringToDir) {
+        checkPersistedFileArguments(persistedFile, dirToString, stringToDir);
+        return enableStatePersisting(new MemoryMappedFilePersister(persistedFile, stringToDir, dirToString));
+    }
+
+    /**
+     * Enables persisting of the {@link PolledDirectory}'s state to the given <code>file</code>,
+     * in the same format as {@link #enableBinaryStatePersisting(Path, Function, Function)},
+     * and checkpoints the state while polling. The files added, removed and modified in each
+     * poll-cycle are appended to a log next to the given file (named as the file with a ".log"
+     * suffix), which is forced to disk at the end of the poll-cycle. So after a crash, the
+     * {@link DirectoryPoller} restarts from the state of the last completed poll-cycle, instead
+     * of reporting all files as added.
+     * <p>
+     * Every <code>cyclesBetweenSnapshots</code> poll-cycles, or once the log has grown to
+     * <code>maxLogSizeInBytes</code>, the log is compacted into the file, which bounds the
+     * time to read the state at the next start.
+     *
+     * @see DirectoryPollerBuilder#enableStatePersisting(Persister)
+     *
+     * @param persistedFile the files where to store persisted data.
+     * @param dirToString a function that converts your {@link PolledDirectory} implementations to a string.
+     * @param stringToDir a function that converts a string (as produced by <code>dirToString</code>)
+     * to an implementation of your {@link PolledDirectory}.
+     * @param cyclesBetweenSnapshots the number of poll-cycles after which the log is compacted.
+     * @param maxLogSizeInBytes the size of the log after which it is compacted.
+     * @return {@link DirectoryPollerBuilder}
+     * @throws IllegalArgumentException if <code>cyclesBetweenSnapshots</code> or
+     *         <code>maxLogSizeInBytes</code> is less than one.
+     */
+    public DirectoryPollerBuilder enableCheckpointedStatePersisting(Path persistedFile,
+            Function<PolledDirectory, String> dirToString, Function<String, PolledDirectory> stringToDir,
+            int cyclesBetweenSnapshots, long maxLogSizeInBytes) {
+        checkPersistedFileArguments(persistedFile, dirToString, stringToDir);
+        if (cyclesBetweenSnapshots < 1) {
+            throw new IllegalArgumentException(
+                    "Argument 'cyclesBetweenSnapshots' is less than one: " + cyclesBetweenSnapshots);
         }
-        if (dirToString == null) {
-            throw new NullPointerException(NULL_ARGUMENT_ERROR_MESSAGE);
+        if (maxLogSizeInBytes < 1) {
+            throw new IllegalArgumentException(
+                    "Argument 'maxLogSizeInBytes' is less than one: " + maxLogSizeInBytes);
         }
-        if (stringToDir == null) {
+        addListener(new CheckpointingStatePersister(new CheckpointingFilePersister(
+                persistedFile, stringToDir, dirToString, cyclesBetweenSnapshots, maxLogSizeInBytes)));
+        return this;
+    }
+
+    private static void checkPersistedFileArguments(Path persistedFile,
+            Function<PolledDirectory, String> dirToString, Function<String, PolledDirectory> stringToDir) {
+        if (persistedFile == null || dirToString == null || stringToDir == null) {
             throw new NullPointerException(NULL_ARGUMENT_ERROR_MESSAGE);
         }
-        if(Files.exists(persistedFile) && Files.isDirectory(persistedFile)) {
-        	throw new IllegalStateException("Persisted file cannot be a directory: " + persistedFile.toAbsolutePath());
+        if (Files.isDirectory(persistedFile)) {
+            throw new IllegalStateException("Persisted file cannot be a directory: " + persistedFile.toAbsolutePath());
         }
-		return enableStatePersisting(new SerializeToFilePersister(persistedFile, stringToDir, dirToString));
-	}
+    }
 
 	/**
 	 * Provide your own {@link Persister} implementation. Any existing persisted data 
@@ -120,7 +253,163 @@ public final class DirectoryPollerBuilder {
         parallelDirectoryPollingEnabled = true;
         return this;
     }
+
+    /**
+     * Enable parallel polling of the directories added in the {@link DirectoryPoller},
+     * using the threads of the given <code>pool</code>. The same pool can be given to
+     * several {@link DirectoryPoller}s, to bound the total number of polling threads.
+     * <p>
+     * NOTE!
+     * This puts constraints on the added listeners to be thread safe.
+     * <p>
+     * Optional setting. Disabled by default.
+     * 
+     * @param pool the {@link PollingThreadPool} to poll directories with.
+     * @return {@link DirectoryPollerBuilder}
+     * @throws NullPointerException if <code>pool</code> is null.
+     */
+    public DirectoryPollerBuilder enableParallelPollingOfDirectories(PollingThreadPool pool) {
+        if (pool == null) {
+            throw new NullPointerException(NULL_ARGUMENT_ERROR_MESSAGE);
+        }
+        parallelDirectoryPollingEnabled = true;
+        pollingThreadPool = pool;
+        return this;
+    }
     
+    /**
+     * Enable parallel polling of the directories added in the {@link DirectoryPoller},
+     * with one virtual thread per directory. Within each directory, the
+     * {@link FileElement#lastModified()} and {@link FileElement#isDirectory()} lookups
+     * are made in a virtual thread per file as well. Events are still fired in
+     * listing order. Suitable for {@link PolledDirectory} implementations that
+     * block on network round trips.
+     * <p>
+     * Virtual threads require Java 21 or later. On older Java runtimes a warning
+     * is logged and the {@link DirectoryPoller} falls back to parallel polling with
+     * platform threads, see {@link #enableParallelPollingOfDirectories()}. When
+     * virtual threads are supported they take precedence over any
+     * {@link PollingThreadPool} set with {@link #enableParallelPollingOfDirectories(PollingThreadPool)}.
+     * <p>
+     * NOTE!
+     * This puts constraints on the added listeners to be thread safe.
+     * <p>
+     * Optional setting. Disabled by default.
+     * 
+     * @return {@link DirectoryPollerBuilder}
+     */
+    public DirectoryPollerBuilder enableVirtualThreadPolling() {
+        parallelDirectoryPollingEnabled = true;
+        virtualThreadPollingEnabled = true;
+        return this;
+    }
+
+    /**
+     * Enable parallel lookups of the {@link FileElement#lastModified()} and
+     * {@link FileElement#isDirectory()} attributes of the files listed in a
+     * directory, using a pool of at most <code>parallelism</code> threads.
+     * Suitable for {@link PolledDirectory} implementations where each attribute
+     * lookup is a network round trip, like FTP. Events are still fired in
+     * listing order.
+     * <p>
+     * The pool is shared by all directories of the {@link DirectoryPoller}, and
+     * shut down when it is stopped. Has no effect together with
+     * {@link #enableVirtualThreadPolling()}, which looks up attributes in
+     * virtual threads when supported.
+     * <p>
+     * NOTE!
+     * This puts constraints on the added {@link FileElement} implementations to be thread safe.
+     * <p>
+     * Optional setting. Disabled by default.
+     * 
+     * @param parallelism the maximum number of attribute lookups made at the same time.
+     * @return {@link DirectoryPollerBuilder}
+     * @throws IllegalArgumentException if <code>parallelism</code> is less than one.
+     */
+    public DirectoryPollerBuilder enableParallelFileAttributeLookups(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Argument 'parallelism' is less than one: " + parallelism);
+        }
+        fileAttributeLookupParallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Enable pipelined polling. Instead of polling all directories in one
+     * poll-cycle, and waiting for the slowest directory before next poll-cycle
+     * starts, each directory is re-armed as soon as its own poll is done, and
+     * polled again after its polling interval. A slow or hanging directory
+     * then only delays itself.
+     * <p>
+     * Each poll of a directory is its own poll-cycle: {@link BeforePollingCycleEvent}
+     * and {@link AfterPollingCycleEvent} are fired per directory, see
+     * {@link BeforePollingCycleEvent#getPolledDirectories()}. Directories are polled
+     * in parallel. Those due at the same time are handed to the polling threads
+     * in order of the priority given in
+     * {@link #addPolledDirectory(PolledDirectory, long, TimeUnit, int)}, highest
+     * first. So when all polling threads are busy, e.g. of a shared
+     * {@link PollingThreadPool}, directories of higher priority are polled first.
+     * <p>
+     * NOTE!
+     * This puts constraints on the added listeners to be thread safe.
+     * <p>
+     * Optional setting. Disabled by default.
+     * 
+     * @return {@link DirectoryPollerBuilder}
+     */
+    public DirectoryPollerBuilder enablePipelinedPolling() {
+        parallelDirectoryPollingEnabled = true;
+        pipelinedPollingEnabled = true;
+        return this;
+    }
+
+    /**
+     * Enable adaptive polling intervals. Each directory backs off after a poll
+     * where no files were added, removed or modified: the number of poll-cycles
+     * until its next poll is doubled, up to the given <code>maxInterval</code>.
+     * As soon as a poll detects any change, the directory falls back to its
+     * configured interval (or to every poll-cycle if it has none).
+     * <p>
+     * Optional setting. Disabled by default.
+     * 
+     * @param maxInterval - the longest interval between two polls of an idle directory.
+     * @param timeUnit - the unit of the interval. Example: TimeUnit.MINUTES
+     * @return {@link DirectoryPollerBuilder}
+     * @throws NullPointerException if <code>timeUnit</code> is null.
+     * @throws IllegalArgumentException if <code>maxInterval</code> is negative.
+     */
+    public DirectoryPollerBuilder enableAdaptivePollingInterval(long maxInterval, TimeUnit timeUnit) {
+        if (timeUnit == null) {
+            throw new NullPointerException(NULL_ARGUMENT_ERROR_MESSAGE);
+        }
+        if (maxInterval < 0) {
+            throw new IllegalArgumentException("Argument 'maxInterval' is negative: " + maxInterval);
+        }
+        adaptivePollingEnabled = true;
+        maxPollingIntervalInMillis = timeUnit.toMillis(maxInterval);
+        return this;
+    }
+
+    /**
+     * Enable a compact representation of the state kept between polls. Instead of
+     * a map of objects per file, the state of each directory is kept in a few
+     * primitive arrays, with the names sorted in one shared byte array. This cuts
+     * the heap used per file to about 12 bytes plus the length of its name, at the
+     * cost of a binary search per listed file in each poll, and of rebuilding the
+     * state of a directory when it has changed.
+     * <p>
+     * With this setting, the files in {@link AfterStopEvent#getFileElements()} are
+     * {@link CachedFileElement}s, not the {@link FileElement}s listed by the directory.
+     * <p>
+     * Optional setting. Disabled by default.
+     * 
+     * @return {@link DirectoryPollerBuilder}
+     */
+    public DirectoryPollerBuilder enableCompactPreviousState() {
+        compactPreviousStateEnabled = true;
+        return this;
+    }
+
 	/**
      * Adds the given <code>directory</code> to the list of polled directories.
      * Mandatory to add at least one directory.
@@ -171,6 +460,56 @@ public final class DirectoryPollerBuilder {
         return this;
     }
 
+    /*
+     * The previous state is read by the Poller of the directory, the first time it runs.
+     */
+    DirectoryPollerBuilder addPolledDirectory(PolledDirectory directory,
+            Supplier<Set<CachedFileElement>> previousState) {
+        addPolledDirectory(directory);
+        lazyPreviousStates.put(directory, previousState);
+        return this;
+    }
+
+    /**
+     * Adds the given <code>directory</code> to the list of polled directories,
+     * to be polled with its own interval and priority.
+     * <p>
+     * The <code>directory</code> is not polled in the poll-cycles of the directories
+     * added without an interval. Instead it is polled on its own: the given
+     * <code>interval</code> after its previous poll is done, as in
+     * {@link #enablePipelinedPolling()}. So it is neither held up by slow directories,
+     * nor is its interval rounded to the interval set with
+     * {@link #setPollingInterval(long, TimeUnit)}, which is used if the given
+     * <code>interval</code> is zero. Each of its polls is a poll-cycle of its own:
+     * {@link BeforePollingCycleEvent} and {@link AfterPollingCycleEvent} are fired
+     * for the <code>directory</code> only.
+     * <p>
+     * Unless {@link #enableParallelPollingOfDirectories()} (or pipelined polling) is
+     * enabled, directories are still polled one at a time, by the thread running
+     * the poll-cycles. Directories due at the same time are then polled in priority
+     * order, highest <code>priority</code> first.
+     * 
+     * @param directory - the directory to poll.
+     * @param interval - the interval between two polls of the <code>directory</code>.
+     * @param timeUnit - the unit of the interval. Example: TimeUnit.MINUTES
+     * @param priority - of directories due at the same time, those with higher priority are polled first.
+     * @throws NullPointerException - if <code>directory</code> or <code>timeUnit</code> is null.
+     * @throws IllegalArgumentException if <code>interval</code> is negative.
+     * @return {@link DirectoryPollerBuilder}
+     */
+    public DirectoryPollerBuilder addPolledDirectory(PolledDirectory directory, long interval, TimeUnit timeUnit,
+            int priority) {
+        if (timeUnit == null) {
+            throw new NullPointerException(NULL_ARGUMENT_ERROR_MESSAGE);
+        }
+        if (interval < 0) {
+            throw new IllegalArgumentException("Argument 'interval' is negative: " + interval);
+        }
+        addPolledDirectory(directory);
+        schedules.put(directory, new DirectorySchedule(timeUnit.toMillis(interval), priority));
+        return this;
+    }
+
     /**
      * Set the interval between each poll cycle. Optional parameter.
      * Default value is 1000 milliseconds.
@@ -0,0 +1,13 @@
+package com.github.drapostolos.rdp4j;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/*
+ * Notified when a directory is removed from a running DirectoryPoller, see
+ * DirectoryPoller#removePolledDirectory(PolledDirectory). Internal, so state
+ * persisters can forget the state of the directory.
+ */
+interface DirectoryRemovalListener extends Rdp4jListener {
+
+    void directoryRemoved(PolledDirectory directory);
+}
@@ -0,0 +1,34 @@
+package com.github.drapostolos.rdp4j;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * Holds the polling interval and priority of a single {@link PolledDirectory}.
+ * A directory without a schedule of its own is polled every poll-cycle,
+ * with default priority. A directory with a schedule of its own is polled on
+ * its own delay, see {@link ScheduledRunnable}.
+ */
+final class DirectorySchedule {
+    static final DirectorySchedule DEFAULT = new DirectorySchedule(0, 0);
+    final long intervalInMillis;
+    final int priority;
+
+    DirectorySchedule(long intervalInMillis, int priority) {
+        this.intervalInMillis = intervalInMillis;
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the given interval rounded up to whole poll-cycles of the given
+     * length. At least one.
+     */
+    static long toPollCycles(long intervalInMillis, long pollingIntervalInMillis) {
+        long cycleLength = Math.max(1, pollingIntervalInMillis);
+        return Math.max(1, (intervalInMillis + cycleLength - 1) / cycleLength);
+    }
+
+    @Override
+    public String toString() {
+        return "DirectorySchedule [intervalInMillis=" + intervalInMillis + ", priority=" + priority + "]";
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.drapostolos.rdp4j;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * Records the measurements of the polls of a single directory. The figures of a
+ * poll are collected by the polling thread, and published together at the end
+ * of the poll, so a {@link DirectoryMetrics} snapshot never holds half a poll.
+ */
+final class DirectoryStats {
+
+    // Written by the polling thread only, until published by endPoll().
+    private boolean pendingIsListed;
+    private boolean pendingIsSkipped;
+    private long pendingListingNanos;
+    private long pendingLookupNanos;
+    private long pendingListenerNanos;
+    private int pendingEntryCount;
+    private int pendingFilteredOutCount;
+    private int pendingAddedCount;
+    private int pendingRemovedCount;
+    private int pendingModifiedCount;
+    private boolean pendingIsIoErrorRaised;
+    private boolean pendingIsRecoverableError;
+
+    // Published, guarded by this.
+    long pollCount;
+    long skippedListingCount;
+    long listingCount;
+    long lastPollNanos;
+    long totalPollNanos;
+    long maxPollNanos;
+    long lastListingNanos;
+    long totalListingNanos;
+    long lastLookupNanos;
+    long totalLookupNanos;
+    long lastListenerNanos;
+    long totalListenerNanos;
+    int lastEntryCount;
+    int lastFilteredOutCount;
+    int trackedFileCount;
+    int lastAddedCount;
+    int lastRemovedCount;
+    int lastModifiedCount;
+    long totalAddedCount;
+    long totalRemovedCount;
+    long totalModifiedCount;
+    long ioErrorCount;
+    long recoverableErrorCount;
+    boolean isIoErrorActive;
+
+    void startPoll() {
+        pendingIsListed = false;
+        pendingIsSkipped = false;
+        pendingListingNanos = 0;
+        pendingLookupNanos = 0;
+        pendingListenerNanos = 0;
+        pendingAddedCount = 0;
+        pendingRemovedCount = 0;
+        pendingModifiedCount = 0;
+        pendingIsIoErrorRaised = false;
+        pendingIsRecoverableError = false;
+    }
+
+    void listed(long listingNanos, long lookupNanos, int entryCount, int filteredOutCount) {
+        pendingIsListed = true;
+        pendingListingNanos = listingNanos;
+        pendingLookupNanos = lookupNanos;
+        pendingEntryCount = entryCount;
+        pendingFilteredOutCount = filteredOutCount;
+    }
+
+    void listingSkipped() {
+        pendingIsSkipped = true;
+    }
+
+    void ioErrorRaised() {
+        pendingIsIoErrorRaised = true;
+    }
+
+    void recoverableError() {
+        pendingIsRecoverableError = true;
+    }
+
+    void compared(DirectoryDiff diff) {
+        pendingAddedCount = diff.getAdded().size();
+        pendingRemovedCount = diff.getRemoved().size();
+        pendingModifiedCount = diff.getModified().size();
+    }
+
+    void notified(long listenerNanos) {
+        pendingListenerNanos += listenerNanos;
+    }
+
+    synchronized void endPoll(long pollNanos, int trackedFileCount, boolean isIoErrorActive) {
+        pollCount++;
+        lastPollNanos = pollNanos;
+        totalPollNanos += pollNanos;
+        maxPollNanos = Math.max(maxPollNanos, pollNanos);
+        if (pendingIsSkipped) {
+            skippedListingCount++;
+        }
+        // The counts of the last listing are kept until the directory is listed again.
+        if (pendingIsListed) {
+            listingCount++;
+            lastEntryCount = pendingEntryCount;
+            lastFilteredOutCount = pendingFilteredOutCount;
+        }
+        lastListingNanos = pendingListingNanos;
+        totalListingNanos += pendingListingNanos;
+        lastLookupNanos = pendingLookupNanos;
+        totalLookupNanos += pendingLookupNanos;
+        lastListenerNanos = pendingListenerNanos;
+        totalListenerNanos += pendingListenerNanos;
+        lastAddedCount = pendingAddedCount;
+        lastRemovedCount = pendingRemovedCount;
+        lastModifiedCount = pendingModifiedCount;
+        totalAddedCount += pendingAddedCount;
+        totalRemovedCount += pendingRemovedCount;
+        totalModifiedCount += pendingModifiedCount;
+        if (pendingIsIoErrorRaised) {
+            ioErrorCount++;
+        }
+        if (pendingIsRecoverableError) {
+            recoverableErrorCount++;
+        }
+        this.trackedFileCount = trackedFileCount;
+        this.isIoErrorActive = isIoErrorActive;
+    }
+
+    synchronized DirectoryMetrics snapshot(PolledDirectory directory) {
+        return new DirectoryMetrics(directory, this);
+    }
+}
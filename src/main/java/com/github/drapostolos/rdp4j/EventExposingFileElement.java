@@ -28,4 +28,8 @@ abstract class EventExposingFileElement extends EventExposingPolledDirectory {
     public CachedFileElement getCachedFileElement() {
         return cache.getCachedFileElement();
     }
+
+    FileElementAndCache getFileElementAndCache() {
+        return cache;
+    }
 }
@@ -16,6 +16,9 @@ import com.github.drapostolos.rdp4j.spi.PolledDirectory;
  * Using this to listen to events on your local file system is discouraged, use the 
  * Java7 WatchService functionality instead. For Java6 see other options
  * <a href=http://www.rgagnon.com/javadetails/java-0617.html>here</a>.
+ * <p>
+ * For large directories prefer {@link JavaNioPathAdapter}, which reads the
+ * attributes of each file once, while listing.
  *
  * @see <a href="https://github.com/drapostolos/rdp4j/wiki/User-Guide">User-Guide</a>
  */
@@ -103,7 +106,7 @@ public final class JavaIoFileAdapter implements FileElement, PolledDirectory {
             String message = "Unknown I/O error when listing files in directory '%s'.";
             throw new IOException(String.format(message, file));
         }
-        for (File child : file.listFiles()) {
+        for (File child : files) {
             result.add(new JavaIoFileAdapter(child));
         }
         return result;
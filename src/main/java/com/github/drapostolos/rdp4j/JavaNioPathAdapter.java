@@ -0,0 +1,166 @@
+package com.github.drapostolos.rdp4j;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import com.github.drapostolos.rdp4j.spi.FileElement;
+import com.github.drapostolos.rdp4j.spi.StreamingPolledDirectory;
+
+/**
+ * An adapter for java's {@link Path} class, that enables monitoring a directory
+ * on the local file system. Unlike {@link JavaIoFileAdapter}, each file is listed
+ * and stat'ed once per poll-cycle: {@link #visitFiles(Visitor)} reads the
+ * {@link BasicFileAttributes} of each file while iterating the
+ * {@link DirectoryStream} (relative to the open directory when the stream is a
+ * {@link SecureDirectoryStream}), and the listed adapters answer
+ * {@link #lastModified()} and {@link #isDirectory()} from those attributes.
+ * The {@link DirectoryPoller} visits the files while iterating the stream, see
+ * {@link StreamingPolledDirectory}.
+ * <p>
+ * Using this to listen to events on your local file system is discouraged, use the
+ * Java7 WatchService functionality instead.
+ *
+ * @see <a href="https://github.com/drapostolos/rdp4j/wiki/User-Guide">User-Guide</a>
+ */
+public final class JavaNioPathAdapter implements FileElement, StreamingPolledDirectory {
+
+    private final Path path;
+    private final BasicFileAttributes attributes;
+
+    /**
+     * @param path the directory to monitor for changes.
+     */
+    public JavaNioPathAdapter(Path path) {
+        this(path, null);
+    }
+
+    private JavaNioPathAdapter(Path path, BasicFileAttributes attributes) {
+        if (path == null) {
+            throw new NullPointerException("null argument not allowed!");
+        }
+        this.path = path;
+        this.attributes = attributes;
+    }
+
+    /**
+     * @return the {@link Path} object wrapped by this adapter object.
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the attributes read when this file was listed, or <code>null</code>
+     *         if this adapter was not created by {@link #listFiles()}.
+     */
+    public BasicFileAttributes getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * @see BasicFileAttributes#lastModifiedTime()
+     */
+    @Override
+    public long lastModified() throws IOException {
+        long lastModified;
+        if (attributes == null) {
+            lastModified = Files.getLastModifiedTime(path).toMillis();
+        } else {
+            lastModified = attributes.lastModifiedTime().toMillis();
+        }
+        if (lastModified == 0L) {
+            String message = "Unknown I/O error occured when retriveing lastModified " +
+                    "attribute for file '%s'.";
+            throw new IOException(String.format(message, path));
+        }
+        return lastModified;
+    }
+
+    /**
+     * @see BasicFileAttributes#isDirectory()
+     */
+    @Override
+    public boolean isDirectory() {
+        if (attributes == null) {
+            return Files.isDirectory(path);
+        }
+        return attributes.isDirectory();
+    }
+
+    /**
+     * @see Path#getFileName()
+     */
+    @Override
+    public String getName() {
+        Path name = path.getFileName();
+        return name == null ? path.toString() : name.toString();
+    }
+
+    /*
+     * Files removed between being listed and being stat'ed are left out of
+     * the listing, i.e. as if they were removed just before it.
+     */
+    @Override
+    public void visitFiles(Visitor visitor) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path child : stream) {
+                BasicFileAttributes childAttributes;
+                try {
+                    childAttributes = readAttributes(stream, child);
+                } catch (NoSuchFileException e) {
+                    continue; // removed since listed.
+                }
+                visitor.visit(new JavaNioPathAdapter(child, childAttributes));
+            }
+        } catch (DirectoryIteratorException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static BasicFileAttributes readAttributes(DirectoryStream<Path> stream, Path child)
+            throws IOException {
+        if (stream instanceof SecureDirectoryStream) {
+            return ((SecureDirectoryStream<Path>) stream)
+                    .getFileAttributeView(child.getFileName(), BasicFileAttributeView.class)
+                    .readAttributes();
+        }
+        return Files.readAttributes(child, BasicFileAttributes.class);
+    }
+
+    /*
+     * Equal to another adapter of the same path, regardless of when the
+     * attributes were read.
+     */
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        JavaNioPathAdapter other = (JavaNioPathAdapter) obj;
+        return path.equals(other.path);
+    }
+
+    /**
+     * @see Path#toString()
+     */
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.github.drapostolos.rdp4j;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import com.github.drapostolos.rdp4j.spi.Persister;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * A {@link Persister} that can list the persisted directories without reading
+ * their state. The state of each directory is read by its {@link Poller}, the
+ * first time it runs.
+ */
+interface LazyLoadingPersister extends Persister {
+
+    /**
+     * @return the persisted directories, each with a supplier that reads its
+     *         persisted state when called.
+     */
+    Map<PolledDirectory, Supplier<Set<CachedFileElement>>> readDataLazily();
+}
@@ -1,25 +1,73 @@
 package com.github.drapostolos.rdp4j;
 
+import static java.util.Arrays.asList;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.slf4j.Logger;
 
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
 class ListenerNotifier {
+    private static final List<Class<? extends Rdp4jListener>> LISTENER_TYPES = asList(
+            DirectoryPollerListener.class,
+            PollCycleListener.class,
+            InitialContentListener.class,
+            DirectoryListener.class,
+            BatchDirectoryListener.class,
+            IoErrorListener.class,
+            DirectoryRemovalListener.class);
+    private static final Rdp4jListener[] NO_LISTENERS = new Rdp4jListener[0];
 	private final Logger logger;
     final Set<Rdp4jListener> listeners = new CopyOnWriteArraySet<Rdp4jListener>();
+    /*
+     * The listeners of each listener interface, in registration order. Rebuilt
+     * when listeners are added or removed, so dispatching an event doesn't
+     * check the type of every registered listener.
+     */
+    private volatile Map<Class<?>, Rdp4jListener[]> listenersByType;
+    private final LongAdder listenerErrorCount = new LongAdder();
 
     ListenerNotifier(Logger logger, Set<Rdp4jListener> listeners) {
         this.logger = logger;
 		this.listeners.addAll(listeners);
+		rebuildListenersByType();
+    }
+
+    synchronized void addListener(Rdp4jListener listener) {
+        if (listeners.add(listener)) {
+            rebuildListenersByType();
+        }
+    }
+
+    synchronized void removeListener(Rdp4jListener listener) {
+        if (listeners.remove(listener)) {
+            rebuildListenersByType();
+            if (listener instanceof AsyncListener) {
+                ((AsyncListener) listener).removed();
+            }
+        }
     }
 
-    void addListener(Rdp4jListener listener) {
-        listeners.add(listener);
+    private void rebuildListenersByType() {
+        Map<Class<?>, Rdp4jListener[]> result = new HashMap<>();
+        for (Class<? extends Rdp4jListener> listenerType : LISTENER_TYPES) {
+            Rdp4jListener[] ofType = listeners.stream()
+                    .filter(listener -> isInstanceOf(listener, listenerType))
+                    .toArray(Rdp4jListener[]::new);
+            result.put(listenerType, ofType);
+        }
+        listenersByType = Collections.unmodifiableMap(result);
     }
 
-    void removeListener(Rdp4jListener listener) {
-        listeners.remove(listener);
+    private Rdp4jListener[] listenersOf(Class<?> listenerType) {
+        return listenersByType.getOrDefault(listenerType, NO_LISTENERS);
     }
 
     void beforePollingCycle(final BeforePollingCycleEvent event) throws InterruptedException {
@@ -42,6 +90,17 @@ class ListenerNotifier {
         notifyListeners(DirectoryListener.class, listener -> listener.fileModified(event));
     }
 
+    void directoryChanged(final DirectoryChangedEvent event) throws InterruptedException {
+        notifyListeners(BatchDirectoryListener.class, listener -> listener.directoryChanged(event));
+    }
+
+    /*
+     * Lets the poller skip creating events no listener is interested in.
+     */
+    boolean hasListeners(Class<? extends Rdp4jListener> listenerType) {
+        return listenersOf(listenerType).length > 0;
+    }
+
     void ioErrorRaised(final IoErrorRaisedEvent event) throws InterruptedException {
         notifyListeners(IoErrorListener.class, listener -> listener.ioErrorRaised(event));
     }
@@ -68,6 +127,15 @@ class ListenerNotifier {
         }
     }
 
+    void directoryRemoved(final PolledDirectory directory) {
+        try {
+            notifyListeners(DirectoryRemovalListener.class, listener -> listener.directoryRemoved(directory));
+        } catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+            // ignore
+        }
+    }
+
     void initialContent(final InitialContentEvent event) throws InterruptedException {
         notifyListeners(InitialContentListener.class, listener -> listener.initialContent(event));
     }
@@ -83,21 +151,34 @@ class ListenerNotifier {
      */
     private <T extends Rdp4jListener> void notifyListeners(Class<T> listenerType, Notifier<T> notifier)
             throws InterruptedException {
-        for (Rdp4jListener listener : listeners) {
-            if (isInstanceOf(listener, listenerType)) {
-                T listener2 = listenerType.cast(listener);
-                try {
-                    notifier.notify(listener2);
-                } catch (InterruptedException e) {
-                    throw e;
-                } catch (Throwable e) {
-                    logErrorMessage(e);
-                }
+        for (Rdp4jListener listener : listenersOf(listenerType)) {
+            T listener2 = listenerType.cast(listener);
+            try {
+                notifier.notify(listener2);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Throwable e) {
+                listenerErrorCount.increment();
+                logErrorMessage(e);
             }
         }
     }
 
+    /**
+     * @return the number of exceptions thrown by listeners so far.
+     */
+    long getListenerErrorCount() {
+        return listenerErrorCount.sum();
+    }
+
+    /*
+     * An AsyncListener implements all listener interfaces, but is only notified of
+     * the events of its wrapped listener. So no events are created for it in vain.
+     */
     <T extends Rdp4jListener> boolean isInstanceOf(Rdp4jListener listener, Class<T> listenerType) {
+        if (listener instanceof AsyncListener) {
+            return ((AsyncListener) listener).listensTo(listenerType);
+        }
         return listenerType.isInstance(listener);
     }
 
@@ -0,0 +1,108 @@
+package com.github.drapostolos.rdp4j;
+
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * Reads the format of {@link BinaryFilePersister} lazily. At start only the
+ * header of each directory section is read, and the section itself skipped.
+ * The section of a directory is memory-mapped and decoded the first time its
+ * {@link Poller} runs. This keeps the time to start, and the heap used by
+ * directories not polled yet, independent of the size of the persisted state.
+ */
+class MemoryMappedFilePersister implements LazyLoadingPersister {
+	private static final Logger LOG = LoggerFactory.getLogger(MemoryMappedFilePersister.class);
+	private final Path persistedFile;
+	private final Function<String, PolledDirectory> stringToDirFunction;
+	private final BinaryFilePersister format;
+
+	MemoryMappedFilePersister(Path file, Function<String, PolledDirectory> stringToDir,
+			Function<PolledDirectory, String> dirToString) {
+		this.persistedFile = file;
+		this.stringToDirFunction = stringToDir;
+		this.format = new BinaryFilePersister(file, stringToDir, dirToString);
+	}
+
+	@Override
+	public boolean containsData() {
+		return Files.exists(persistedFile);
+	}
+
+	@Override
+	public Map<PolledDirectory, Set<CachedFileElement>> readData() {
+		Map<PolledDirectory, Set<CachedFileElement>> result = new HashMap<>();
+		readDataLazily().forEach((directory, state) -> result.put(directory, state.get()));
+		return result;
+	}
+
+	@Override
+	public Map<PolledDirectory, Supplier<Set<CachedFileElement>>> readDataLazily() {
+		try (BinaryStateInput in = new BinaryStateInput(FileChannel.open(persistedFile, READ))) {
+			int directoryCount = BinaryFilePersister.readHeader(in, persistedFile);
+			Map<PolledDirectory, Supplier<Set<CachedFileElement>>> result = new HashMap<>();
+			for (int i = 0; i < directoryCount; i++) {
+				String directory = in.readString();
+				long sectionLength = in.readLong();
+				long sectionPosition = in.position();
+				in.skip(sectionLength);
+				result.put(stringToDirFunction.apply(directory),
+						() -> readSection(directory, sectionPosition, sectionLength));
+			}
+			LOG.info("Found {} persisted directories [in {}]", directoryCount, persistedFile);
+			return result;
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to read persisted state from: " + persistedFile, e);
+		}
+	}
+
+	/*
+	 * The mapping stays valid after the channel is closed. The file is never
+	 * written in place, see writeData().
+	 */
+	private Set<CachedFileElement> readSection(String directory, long position, long length) {
+		try (FileChannel channel = FileChannel.open(persistedFile, READ)) {
+			MappedByteBuffer section = channel.map(MapMode.READ_ONLY, position, length);
+			Set<CachedFileElement> files = BinaryFilePersister.readEntries(new BinaryStateInput(section));
+			LOG.info("  {} FileElements in {}", files.size(), directory);
+			return files;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Unable to read persisted state of '" + directory
+					+ "' from: " + persistedFile, e);
+		}
+	}
+
+	/*
+	 * Written to a sibling file that then replaces the persisted file, as
+	 * truncating a file that is still mapped is not allowed on all platforms.
+	 */
+	@Override
+	public void writeData(Map<PolledDirectory, Set<CachedFileElement>> data) {
+		try {
+			AtomicFileWriter.write(persistedFile, false, channel -> {
+				BinaryStateFileOutput out = new BinaryStateFileOutput(channel);
+				format.writeData(out, data);
+				out.flush();
+			});
+			LOG.info("Persisted {} directories [in {}]", data.size(), persistedFile);
+		} catch (Exception e) {
+			throw new IllegalStateException("Unable to persist state to: " + persistedFile, e);
+		}
+	}
+}
@@ -1,153 +1,519 @@
 package com.github.drapostolos.rdp4j;
 
 import static java.lang.String.format;
-import static java.util.stream.Collectors.toMap;
+import static java.util.Collections.emptyList;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.drapostolos.rdp4j.spi.BulkAttributePolledDirectory;
 import com.github.drapostolos.rdp4j.spi.FileElement;
 import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+import com.github.drapostolos.rdp4j.spi.StreamingPolledDirectory;
 
 class Poller implements Callable<Object> {
 
     private static final Logger LOG = LoggerFactory.getLogger(ScheduledRunnable.class);
+    private static final int MAX_PENDING_LOOKUPS = 256;
     final PolledDirectory directory;
-    private final List<FileElementAndCache> modifiedFiles = new ArrayList<>();
     private final FileFilter filter;
     private final ListenerNotifier notifier;
     private boolean isFirstPollCycle = true;
     private boolean isFileSystemAccessible = true; 
-    private HashMapComparer<String, FileElementAndCache> mapComparer;
-    final Map<String, FileElementAndCache> currentListedFiles;
-    private final Map<String, FileElementAndCache> previousListedFiles;
+    private final DirectoryDiff diff = new DirectoryDiff();
+    Map<String, FileElementAndCache> currentListedFiles;
+    final Map<String, FileElementAndCache> previousListedFiles;
+    private final boolean compactPreviousState;
+    private CompactSnapshot compactPreviousListedFiles = CompactSnapshot.EMPTY;
+    private boolean hasWarnedAboutUnsortedListing = false;
+    private Supplier<Set<CachedFileElement>> unreadPreviousState;
+    private boolean hasListedFiles = false;
+    private Object lastChangeToken;
     private final DirectoryPoller dp;
+    private final DirectorySchedule schedule;
+    private final long millisPerCycle;
+    private final long maxCyclesPerPoll;
+    private long cyclesPerPoll;
+    private long cyclesUntilPoll = 0;
+    private final ExecutorService attributeExecutor;
+    private volatile boolean isRemoved = false;
+    private final DirectoryStats stats = new DirectoryStats();
+    // Counted while listing, by the listing thread.
+    private int listedCount;
+    private int acceptedCount;
+    private long lookupNanos;
 
     Poller(DirectoryPoller dp, PolledDirectory directory, Set<CachedFileElement> previousListedFiles) {
+        this(dp, directory, previousListedFiles, DirectorySchedule.DEFAULT, null);
+    }
+
+    Poller(DirectoryPoller dp, PolledDirectory directory, Set<CachedFileElement> previousListedFiles,
+            DirectorySchedule schedule, ExecutorService attributeExecutor) {
+        this(dp, directory, () -> previousListedFiles, schedule, attributeExecutor);
+    }
+
+    /*
+     * The previous state is read the first time this poller runs. If
+     * attributeExecutor is not null, the attributes of the listed files are
+     * looked up in parallel with it.
+     */
+    Poller(DirectoryPoller dp, PolledDirectory directory, Supplier<Set<CachedFileElement>> previousState,
+            DirectorySchedule schedule, ExecutorService attributeExecutor) {
         this.dp = dp;
+        this.attributeExecutor = attributeExecutor;
+        this.schedule = schedule;
+        this.millisPerCycle = hasOwnSchedule() && schedule.intervalInMillis > 0
+                ? schedule.intervalInMillis
+                : dp.getPollingIntervalInMillis();
+        this.maxCyclesPerPoll = DirectorySchedule.toPollCycles(dp.maxPollingIntervalInMillis, millisPerCycle);
+        this.cyclesPerPoll = 1;
         this.directory = directory;
         this.filter = dp.getDefaultFileFilter();
         this.notifier = dp.notifier;
         this.currentListedFiles = new LinkedHashMap<>();
-        this.previousListedFiles = previousListedFiles.stream()
-        		.map(file -> new FileElementAndCache(file, file))
-        		.collect(toMap(e ->e.getName(), e -> e, (e1, e2) -> e1, LinkedHashMap::new));
+        this.previousListedFiles = new LinkedHashMap<>();
+        this.compactPreviousState = dp.compactPreviousStateEnabled;
+        this.unreadPreviousState = previousState;
+    }
+
+    /*
+     * Read once, even if reading fails.
+     */
+    private void readPreviousStateIfNeeded() {
+        if (unreadPreviousState == null) {
+            return;
+        }
+        Supplier<Set<CachedFileElement>> previousState = unreadPreviousState;
+        unreadPreviousState = null;
+        Set<CachedFileElement> files = previousState.get();
+        if (compactPreviousState) {
+            compactPreviousListedFiles = CompactSnapshot.of(files);
+        } else {
+            for (CachedFileElement file : files) {
+                previousListedFiles.putIfAbsent(file.getName(), new FileElementAndCache(file, file));
+            }
+        }
+    }
+
+    /*
+     * Comparing against a previous state that can't be read would report files
+     * already reported, so the DirectoryPoller is stopped, as for a crashing
+     * PolledDirectory.
+     */
+    private void readPreviousStateOrStop() {
+        try {
+            readPreviousStateIfNeeded();
+        } catch (RuntimeException e) {
+            String message = "DirectoryPoller will be stopped "
+                    + "due to unreadable previous state of directory '%s'. "
+                    + "See underlying exception for more information.";
+            throw stopDueToCrash(String.format(message, directory), e);
+        }
+    }
+
+    private IllegalStateException stopDueToCrash(String message, RuntimeException e) {
+        dp.stopAsync();
+        LOG.error(message, e);
+        return new IllegalStateException(message, e);
+    }
+
+    /**
+     * Returns the files listed in the last successful poll, or the previous
+     * state if the directory has not been listed yet. With a compact previous
+     * state, these are {@link CachedFileElement}s only.
+     */
+    Collection<FileElementAndCache> getLastListedFiles() {
+        if (!compactPreviousState && hasListedFiles) {
+            return currentListedFiles.values();
+        }
+        try {
+            readPreviousStateIfNeeded();
+        } catch (RuntimeException e) {
+            LOG.error("Unable to read previous state of directory: " + directory, e);
+        }
+        if (compactPreviousState) {
+            return compactPreviousListedFiles.asFiles();
+        }
+        return previousListedFiles.values();
     }
 
     @Override
     public Object call() throws InterruptedException {
-        collectCurrentFilesAndNotifyListenersIfIoErrorRaisedOrCeased();
+        long pollStart = System.nanoTime();
+        stats.startPoll();
+        readPreviousStateOrStop();
+        boolean isListed = collectCurrentFilesAndNotifyListenersIfIoErrorRaisedOrCeased();
         if (isFilesystemAccessible()) {
-            detectAndCollectModifiedFiles();
-            setComparerForCurrentVersusPreviousListedFiles();
+            if (!isListed) {
+                diff.clear();
+            } else if (!compactPreviousState) {
+                diff.compute(previousListedFiles, currentListedFiles);
+            }
+            long notifyStart = System.nanoTime();
             if (isFirstPollCycle) {
                 doActionsSpecificForFirstPollCycle();
                 isFirstPollCycle = false;
             } else {
                 notifyListenersWithRemovedAddedModifiedFiles();
             }
+            stats.notified(System.nanoTime() - notifyStart);
             if (isDirectoryModified()) {
                 copyCurrentListedFilesToPrevious();
             }
+            if (compactPreviousState) {
+                // only the compact snapshot is kept between polls.
+                currentListedFiles = new LinkedHashMap<>();
+            }
+            if (dp.adaptivePollingEnabled) {
+                adaptPollingInterval();
+            }
         }
+        stats.endPoll(System.nanoTime() - pollStart, getTrackedFileCount(), isFilesystemUnaccessible());
         return null;
     }
 
-    private void doActionsSpecificForFirstPollCycle() throws InterruptedException {
-        if (dp.fileAddedEventEnabledForInitialContent) {
-            // make sure this events fires before InitialContentEvent
-            notifyIfNeeded(notifier::fileAdded, file -> new FileAddedEvent(dp, directory, file), currentListedFiles.values());
+    private int getTrackedFileCount() {
+        return compactPreviousState ? compactPreviousListedFiles.size() : previousListedFiles.size();
+    }
+
+    DirectoryMetrics getMetrics() {
+        return stats.snapshot(directory);
+    }
+
+    /*
+     * In compact mode the diff against the previous state is computed while the
+     * files are listed, and the listing is only kept in the first poll, for its
+     * InitialContentEvent.
+     */
+    private void collect(FileElementAndCache file, Map<String, FileElementAndCache> listing) {
+        if (!compactPreviousState) {
+            listing.put(file.getName(), file);
+        } else if (diff.visit(file) && isFirstPollCycle) {
+            listing.put(file.getName(), file);
         }
-        dp.notifier.initialContent(new InitialContentEvent(dp, directory, currentListedFiles.values()));
-        if(!previousListedFiles.isEmpty()) {
-        	notifyListenersWithRemovedAddedModifiedFiles();
+    }
+
+    /*
+     * A listing declared sorted, that is not, is compared by lookups from where
+     * it turned out not to be sorted.
+     */
+    private void finishDiffAgainstCompactPreviousState() {
+        diff.finish();
+        if (diff.isListingFoundUnsorted() && !hasWarnedAboutUnsortedListing) {
+            LOG.warn("Directory declares a sorted listing, but its listing is not sorted by name: {}", directory);
+            hasWarnedAboutUnsortedListing = true;
         }
     }
 
-    private boolean isFilesystemAccessible() {
-        return isFileSystemAccessible;
+    /*
+     * Doubles the number of poll-cycles until next poll after an idle poll, up to
+     * the configured ceiling. Falls back to the configured interval as soon as the
+     * directory is modified. A directory with an interval of its own counts its
+     * interval as one poll-cycle.
+     */
+    private void adaptPollingInterval() {
+        if (isDirectoryModified()) {
+            cyclesPerPoll = 1;
+        } else {
+            cyclesPerPoll = Math.min(maxCyclesPerPoll, cyclesPerPoll * 2);
+        }
+        cyclesUntilPoll = cyclesPerPoll - 1;
     }
 
-    private void setComparerForCurrentVersusPreviousListedFiles() {
-        mapComparer = new HashMapComparer<>(previousListedFiles, currentListedFiles);
+    /**
+     * Counts down one poll-cycle, and returns true if this directory is due to
+     * be polled in the current poll-cycle. A new directory is always due.
+     */
+    boolean isDueThisPollCycle() {
+        if (cyclesUntilPoll > 0) {
+            cyclesUntilPoll--;
+            return false;
+        }
+        cyclesUntilPoll = cyclesPerPoll - 1;
+        return true;
+    }
+
+    int getPriority() {
+        return schedule.priority;
+    }
+
+    /**
+     * @return <code>true</code> if this directory was added with an interval of
+     *         its own, and is polled on its own delay instead of in the periodic
+     *         poll-cycles.
+     */
+    boolean hasOwnSchedule() {
+        return schedule != DirectorySchedule.DEFAULT;
     }
 
-    private void detectAndCollectModifiedFiles() {
-        modifiedFiles.clear();
-        for (FileElementAndCache f : currentListedFiles.values()) {
-            if (isFileModified(f)) {
-                modifiedFiles.add(f);
+    /**
+     * Returns the delay until this directory is due to be polled again, when
+     * polled on its own delay.
+     */
+    long getMillisUntilNextPoll() {
+        return cyclesPerPoll * millisPerCycle;
+    }
+
+    void markRemoved() {
+        isRemoved = true;
+    }
+
+    boolean isRemoved() {
+        return isRemoved;
+    }
+
+    private void doActionsSpecificForFirstPollCycle() throws InterruptedException {
+        if (dp.fileAddedEventEnabledForInitialContent) {
+            // make sure this events fires before InitialContentEvent
+            notifyIfNeeded(notifier::fileAdded, file -> new FileAddedEvent(dp, directory, file), currentListedFiles.values());
+            if (!currentListedFiles.isEmpty() && notifier.hasListeners(BatchDirectoryListener.class)) {
+                notifier.directoryChanged(new DirectoryChangedEvent(dp, directory,
+                        currentListedFiles.values(), emptyList(), emptyList()));
             }
         }
+        dp.notifier.initialContent(new InitialContentEvent(dp, directory, currentListedFiles.values()));
+        if(compactPreviousState ? !compactPreviousListedFiles.isEmpty() : !previousListedFiles.isEmpty()) {
+        	notifyListenersWithRemovedAddedModifiedFiles();
+        }
     }
 
-    private boolean isFileModified(FileElementAndCache file) {
-        if (previousListedFiles.containsKey(file.getName())) {
-            long current = file.lastModified();
-            long previous = previousListedFiles.get(file.getName()).lastModified();
-            return current != previous;
-        }
-        return false;
+    private boolean isFilesystemAccessible() {
+        return isFileSystemAccessible;
     }
 
-    private void collectCurrentFilesAndNotifyListenersIfIoErrorRaisedOrCeased() throws InterruptedException {
+    /*
+     * Returns false if the directory was not listed, as its change token is
+     * the same as when it was last listed. The token is read before listing,
+     * so a change made while listing is seen in the next poll.
+     */
+    private boolean collectCurrentFilesAndNotifyListenersIfIoErrorRaisedOrCeased() throws InterruptedException {
         try {
-            Set<FileElement> files = directory.listFiles();
-            if (files == null) {
-                String message = "Unknown underlying IO-error when listing files "
-                        + "in directory: '%s'. Method listFiles() returned null.";
-                throw new IOException(String.format(message, directory));
+            Object changeToken = directory.getChangeToken();
+            if (changeToken != null && changeToken.equals(lastChangeToken) && isFilesystemAccessible()) {
+                stats.listingSkipped();
+                return false;
             }
-
-            Map<String, FileElementAndCache> temp = filterFiles(files);
+            lastChangeToken = null;
+            listedCount = 0;
+            acceptedCount = 0;
+            lookupNanos = 0;
+            long listingStart = System.nanoTime();
+            Map<String, FileElementAndCache> temp = new LinkedHashMap<>();
+            if (compactPreviousState) {
+                diff.start(compactPreviousListedFiles, directory.isListingSorted());
+            }
+            if (directory instanceof StreamingPolledDirectory) {
+                visitAndFilterFiles((StreamingPolledDirectory) directory, temp);
+            } else {
+                Set<? extends FileElement> files = listFiles();
+                long lookupStart = System.nanoTime();
+                listedCount = files.size();
+                filterFiles(files, temp);
+                lookupNanos = System.nanoTime() - lookupStart;
+            }
+            if (compactPreviousState) {
+                finishDiffAgainstCompactPreviousState();
+            }
+            long listingNanos = System.nanoTime() - listingStart - lookupNanos;
+            stats.listed(listingNanos, lookupNanos, listedCount, listedCount - acceptedCount);
             if (isFilesystemUnaccessible()) {
+                long notifyStart = System.nanoTime();
                 notifier.ioErrorCeased(new IoErrorCeasedEvent(dp, directory));
+                stats.notified(System.nanoTime() - notifyStart);
                 isFileSystemAccessible = true;
             }
-            currentListedFiles.clear();
-            currentListedFiles.putAll(temp);
+            currentListedFiles = temp;
+            hasListedFiles = true;
+            lastChangeToken = changeToken;
         } catch (IOException e) {
             if (isFilesystemAccessible()) {
                 isFileSystemAccessible = false;
+                stats.ioErrorRaised();
+                long notifyStart = System.nanoTime();
                 notifier.ioErrorRaised(new IoErrorRaisedEvent(dp, directory, e));
+                stats.notified(System.nanoTime() - notifyStart);
             }
         } catch (DirectoryPollerException e) {
             // Silently wait fore next poll.
+            stats.recoverableError();
+            if (compactPreviousState) {
+                // the diff computed while listing is incomplete.
+                return false;
+            }
         } catch (RuntimeException e) {
-            dp.stopAsync();
             String message = "DirectoryPoller will be stopped "
                     + "due to unexpected crash in PolledDirectory implementation '%s'. "
                     + "See underlying exception for more information.";
-            message = String.format(message, directory.getClass().getName());
-            LOG.error(message, e);
-            throw new IllegalStateException(message, e);
+            throw stopDueToCrash(String.format(message, directory.getClass().getName()), e);
+        }
+        return true;
+    }
+
+    /*
+     * Files listed by a BulkAttributePolledDirectory already hold their
+     * attributes, and are used as they are.
+     */
+    private Set<? extends FileElement> listFiles() throws IOException {
+        Set<? extends FileElement> files;
+        String method;
+        if (directory instanceof BulkAttributePolledDirectory) {
+            files = ((BulkAttributePolledDirectory) directory).listCachedFiles();
+            method = "listCachedFiles()";
+        } else {
+            files = directory.listFiles();
+            method = "listFiles()";
+        }
+        if (files == null) {
+            String message = "Unknown underlying IO-error when listing files "
+                    + "in directory: '%s'. Method %s returned null.";
+            throw new IOException(String.format(message, directory, method));
         }
+        return files;
     }
 
-    private Map<String, FileElementAndCache> filterFiles(Set<FileElement> files) throws IOException {
-        Map<String, FileElementAndCache> result = new LinkedHashMap<>();
+    private void filterFiles(Set<? extends FileElement> files, Map<String, FileElementAndCache> listing)
+            throws IOException, InterruptedException {
+        if (attributeExecutor != null && !(directory instanceof BulkAttributePolledDirectory)) {
+            filterFilesInParallel(files, listing);
+            return;
+        }
         for (FileElement file : files) {
             if (filter.accept(file)) {
-            	FileElementAndCache cache = new FileElementAndCache(file, CachedFileElement.of(file));
-                if (cache.lastModified() == 0L) {
-                    String message = "Unknown underlying IO-Error. "
-                            + "Method 'lastModified()' returned '0L' for file '%s'";
-                    throw new IOException(format(message, file));
+                acceptedCount++;
+                collect(cache(file), listing);
+            }
+        }
+    }
+
+    /*
+     * Filters each file as it is visited, so no listing is built in between.
+     * Only the attribute lookups of files not listed as CachedFileElements are
+     * done in parallel.
+     */
+    private void visitAndFilterFiles(StreamingPolledDirectory directory, Map<String, FileElementAndCache> listing)
+            throws IOException, InterruptedException {
+        if (attributeExecutor == null) {
+            directory.visitFiles(file -> {
+                listedCount++;
+                if (filter.accept(file)) {
+                    acceptedCount++;
+                    collect(cache(file), listing);
                 }
-                result.put(cache.getName(), cache);
+            });
+            return;
+        }
+        Deque<Future<FileElementAndCache>> lookups = new ArrayDeque<>();
+        try {
+            directory.visitFiles(file -> {
+                listedCount++;
+                if (filter.accept(file)) {
+                    acceptedCount++;
+                    try {
+                        lookUp(file, lookups, listing);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while visiting: " + directory);
+                    }
+                }
+            });
+            long lookupStart = System.nanoTime();
+            collectLookups(lookups, listing, 0);
+            lookupNanos = System.nanoTime() - lookupStart;
+        } catch (IOException e) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
             }
+            throw e;
+        } finally {
+            lookups.forEach(lookup -> lookup.cancel(true));
         }
-        return result;
+    }
+
+    /*
+     * Looks up the attributes of each file in its own task, but collects the
+     * result in listing order, so the order of events does not depend on which
+     * lookup finishes first.
+     */
+    private void filterFilesInParallel(Set<? extends FileElement> files, Map<String, FileElementAndCache> listing)
+            throws IOException, InterruptedException {
+        Deque<Future<FileElementAndCache>> lookups = new ArrayDeque<>();
+        try {
+            for (FileElement file : files) {
+                if (filter.accept(file)) {
+                    acceptedCount++;
+                    lookUp(file, lookups, listing);
+                }
+            }
+            collectLookups(lookups, listing, 0);
+        } finally {
+            lookups.forEach(lookup -> lookup.cancel(true));
+        }
+    }
+
+    /*
+     * At most MAX_PENDING_LOOKUPS lookups are pending at a time, so the lookups
+     * do not hold the whole listing either.
+     */
+    private void lookUp(FileElement file, Deque<Future<FileElementAndCache>> lookups,
+            Map<String, FileElementAndCache> listing) throws IOException, InterruptedException {
+        lookups.add(file instanceof CachedFileElement
+                ? CompletableFuture.completedFuture(cache(file))
+                : attributeExecutor.submit(() -> cache(file)));
+        collectLookups(lookups, listing, MAX_PENDING_LOOKUPS - 1);
+    }
+
+    /*
+     * Collects the oldest lookups until only the given number are pending.
+     */
+    private void collectLookups(Deque<Future<FileElementAndCache>> lookups, Map<String, FileElementAndCache> listing,
+            int maxPending) throws IOException, InterruptedException {
+        while (lookups.size() > maxPending) {
+            try {
+                collect(lookups.peek().get(), listing);
+                lookups.poll();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+
+    private FileElementAndCache cache(FileElement file) throws IOException {
+        CachedFileElement cached = file instanceof CachedFileElement
+                ? (CachedFileElement) file
+                : CachedFileElement.of(file);
+        FileElementAndCache cache = new FileElementAndCache(file, cached);
+        if (cache.lastModified() == 0L) {
+            String message = "Unknown underlying IO-Error. "
+                    + "Method 'lastModified()' returned '0L' for file '%s'";
+            throw new IOException(format(message, file));
+        }
+        return cache;
     }
 
     private boolean isFilesystemUnaccessible() {
@@ -155,13 +521,23 @@ class Poller implements Callable<Object> {
     }
 
     private boolean isDirectoryModified() {
-        return !modifiedFiles.isEmpty() || mapComparer.hasDiff();
+        return diff.hasDiff();
     }
 
     private void notifyListenersWithRemovedAddedModifiedFiles() throws InterruptedException {
-        notifyIfNeeded(notifier::fileRemoved, file -> new FileRemovedEvent(dp, directory, file), mapComparer.getRemoved().values());
-        notifyIfNeeded(notifier::fileAdded, file -> new FileAddedEvent(dp, directory, file), mapComparer.getAdded().values());
-        notifyIfNeeded(notifier::fileModified, file -> new FileModifiedEvent(dp, directory, file), modifiedFiles);
+        if (!isDirectoryModified()) {
+            return;
+        }
+        stats.compared(diff);
+        if (notifier.hasListeners(DirectoryListener.class)) {
+            notifyIfNeeded(notifier::fileRemoved, file -> new FileRemovedEvent(dp, directory, file), diff.getRemoved());
+            notifyIfNeeded(notifier::fileAdded, file -> new FileAddedEvent(dp, directory, file), diff.getAdded());
+            notifyIfNeeded(notifier::fileModified, file -> new FileModifiedEvent(dp, directory, file), diff.getModified());
+        }
+        if (notifier.hasListeners(BatchDirectoryListener.class)) {
+            notifier.directoryChanged(new DirectoryChangedEvent(dp, directory,
+                    diff.getAdded(), diff.getRemoved(), diff.getModified()));
+        }
     }
     
     private <T> void notifyIfNeeded(Notifier<T> notifier, Function<FileElementAndCache, T> event, Collection<FileElementAndCache> files) throws InterruptedException {
@@ -174,9 +550,26 @@ class Poller implements Callable<Object> {
     	void notify(T event) throws InterruptedException;
     }
 
+    /*
+     * Only called when the directory is modified. Applies the diff instead of
+     * rebuilding the previous listing, so the cost follows the number of changed
+     * files rather than the size of the directory. A compact snapshot cannot be
+     * changed, and is rebuilt from the previous snapshot and the diff.
+     */
     private void copyCurrentListedFilesToPrevious() {
-        previousListedFiles.clear();
-        previousListedFiles.putAll(currentListedFiles);
+        if (compactPreviousState) {
+            compactPreviousListedFiles = diff.toSnapshot();
+            return;
+        }
+        for (FileElementAndCache file : diff.getRemoved()) {
+            previousListedFiles.remove(file.getName());
+        }
+        for (FileElementAndCache file : diff.getAdded()) {
+            previousListedFiles.put(file.getName(), file);
+        }
+        for (FileElementAndCache file : diff.getModified()) {
+            previousListedFiles.put(file.getName(), file);
+        }
     }
 
     @Override
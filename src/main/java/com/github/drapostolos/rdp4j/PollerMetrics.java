@@ -0,0 +1,102 @@
+package com.github.drapostolos.rdp4j;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * An immutable snapshot of the measurements of a {@link DirectoryPoller}: its
+ * poll-cycles, errors thrown by its listeners, and the {@link DirectoryMetrics}
+ * of each of its directories. Times are in nanoseconds.
+ * <p>
+ * The measurements are always recorded, and cost a few reads of
+ * {@link System#nanoTime()} per directory and poll.
+ *
+ * @see DirectoryPoller#getMetrics()
+ */
+public final class PollerMetrics {
+
+    private final long pollCycleCount;
+    private final long lastPollCycleNanos;
+    private final long maxPollCycleNanos;
+    private final long listenerErrorCount;
+    private final Map<PolledDirectory, DirectoryMetrics> directories;
+
+    PollerMetrics(long pollCycleCount, long lastPollCycleNanos, long maxPollCycleNanos, long listenerErrorCount,
+            Map<PolledDirectory, DirectoryMetrics> directories) {
+        this.pollCycleCount = pollCycleCount;
+        this.lastPollCycleNanos = lastPollCycleNanos;
+        this.maxPollCycleNanos = maxPollCycleNanos;
+        this.listenerErrorCount = listenerErrorCount;
+        this.directories = Collections.unmodifiableMap(new LinkedHashMap<>(directories));
+    }
+
+    /**
+     * @return the number of poll-cycles run. In pipelined mode each poll of a
+     *         directory is a poll-cycle of its own, as is each poll of a directory
+     *         added with an interval of its own.
+     * @see DirectoryPollerBuilder#enablePipelinedPolling()
+     */
+    public long getPollCycleCount() {
+        return pollCycleCount;
+    }
+
+    /**
+     * @return the time of the last poll-cycle, including the
+     *         {@link PollCycleListener}s.
+     */
+    public long getLastPollCycleNanos() {
+        return lastPollCycleNanos;
+    }
+
+    /**
+     * @return the time of the slowest poll-cycle.
+     */
+    public long getMaxPollCycleNanos() {
+        return maxPollCycleNanos;
+    }
+
+    /**
+     * @return the number of exceptions thrown by listeners, which are logged and
+     *         otherwise ignored.
+     */
+    public long getListenerErrorCount() {
+        return listenerErrorCount;
+    }
+
+    /**
+     * @return the metrics of each directory currently polled.
+     */
+    public Map<PolledDirectory, DirectoryMetrics> getDirectoryMetrics() {
+        return directories;
+    }
+
+    /**
+     * @param directory a polled directory.
+     * @return the metrics of the given directory, or <code>null</code> if it is not
+     *         polled.
+     */
+    public DirectoryMetrics getDirectoryMetrics(PolledDirectory directory) {
+        return directories.get(directory);
+    }
+
+    /**
+     * @return the number of files kept as the state of all directories.
+     */
+    public long getTrackedFileCount() {
+        long result = 0;
+        for (DirectoryMetrics metrics : directories.values()) {
+            result += metrics.getTrackedFileCount();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[pollCycles=%d, lastPollCycleNanos=%d, maxPollCycleNanos=%d, "
+                + "listenerErrors=%d, directories=%d]", getClass().getSimpleName(), pollCycleCount,
+                lastPollCycleNanos, maxPollCycleNanos, listenerErrorCount, directories.size());
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.drapostolos.rdp4j;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of threads, used for polling directories in parallel. One pool
+ * can be shared by several {@link DirectoryPoller} instances, so that the number
+ * of polling threads in a JVM is bounded by the pool's parallelism rather than by
+ * the number of polled directories.
+ * <p>
+ * Directories due for polling while all threads are busy are queued, see
+ * {@link #getQueueDepth()}. Idle threads are released after one minute.
+ * <p>
+ * The pool is owned by the client: stopping a {@link DirectoryPoller} does not
+ * shut down the pool. Call {@link #shutdown()} once all {@link DirectoryPoller}s
+ * using it are stopped.
+ *
+ * @see DirectoryPollerBuilder#enableParallelPollingOfDirectories(PollingThreadPool)
+ */
+public final class PollingThreadPool {
+    private static final AtomicInteger poolCount = new AtomicInteger();
+    private final ThreadPoolExecutor executor;
+    private final int parallelism;
+
+    /**
+     * @param parallelism the maximum number of directories polled at the same time.
+     * @throws IllegalArgumentException if <code>parallelism</code> is less than one.
+     */
+    public PollingThreadPool(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Argument 'parallelism' is less than one: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        String namePrefix = "PollingThreadPool-" + poolCount.incrementAndGet() + "-";
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(parallelism, parallelism, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r);
+                    t.setName(namePrefix + threadCount.incrementAndGet());
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the maximum number of directories polled at the same time.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return the number of directories waiting for a free thread to be polled.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of directories being polled right now.
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Shuts down this pool. Polls already started or queued will finish, but
+     * {@link DirectoryPoller}s still using this pool will stop polling.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return <code>true</code> if {@link #shutdown()} has been called, otherwise false.
+     */
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    ExecutorService getExecutor() {
+        return executor;
+    }
+
+    @Override
+    public String toString() {
+        return "PollingThreadPool [parallelism=" + parallelism + ", queueDepth=" + getQueueDepth() + "]";
+    }
+}
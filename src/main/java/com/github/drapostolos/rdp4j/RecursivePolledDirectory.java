@@ -0,0 +1,250 @@
+package com.github.drapostolos.rdp4j;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import com.github.drapostolos.rdp4j.spi.FileElement;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/**
+ * A {@link PolledDirectory} that polls a whole directory tree, instead of a
+ * single flat directory. The files of all sub-directories are listed as
+ * {@link RelativeFileElement}s, named by their path relative to the root
+ * directory, with '/' as separator. Example: "a/b/file.txt". Sub-directories
+ * themselves are listed as well, so fired events also cover added and removed
+ * directories.
+ * <p>
+ * Symbolic links to directories are followed. A directory of a
+ * {@link JavaIoFileAdapter} or {@link JavaNioPathAdapter} already listed in the
+ * poll-cycle, like the target of a link to a parent directory, is listed as an
+ * entry but not descended into again.
+ * <p>
+ * Sub-directories are found by {@link FileElement#isDirectory()}, and listed as
+ * {@link PolledDirectory}s of their own. By default the listed {@link FileElement}s
+ * of directories are expected to implement {@link PolledDirectory} too, like
+ * {@link JavaIoFileAdapter} and {@link JavaNioPathAdapter}. Otherwise, give a
+ * function that returns the {@link PolledDirectory} of a listed directory.
+ * <p>
+ * With {@link #enableIncrementalRescans()}, a sub-directory is only listed
+ * again when its {@link FileElement#lastModified()} has changed since the
+ * previous poll-cycle, see that method for its constraints.
+ * <p>
+ * Example:
+ * <pre>
+ *  DirectoryPoller dp = DirectoryPoller.newBuilder()
+ *  .addPolledDirectory(new RecursivePolledDirectory(new JavaIoFileAdapter(rootDir)))
+ *  .addListener(new MyListenerImp())
+ *  .start();
+ * </pre>
+ */
+public final class RecursivePolledDirectory implements PolledDirectory {
+    private static final String SEPARATOR = "/";
+    private final PolledDirectory root;
+    private final Function<FileElement, PolledDirectory> toDirectory;
+    private volatile boolean incrementalRescansEnabled = false;
+    private Map<String, Subtree> subtrees = new HashMap<>();
+
+    /*
+     * The listing of a single sub-directory, as of its last modified time.
+     */
+    private static final class Subtree {
+        private final long lastModified;
+        private final List<FileElement> files;
+
+        private Subtree(long lastModified, List<FileElement> files) {
+            this.lastModified = lastModified;
+            this.files = files;
+        }
+    }
+
+    /**
+     * @param root the root directory of the tree to poll. Listed directories
+     *        must implement {@link PolledDirectory}.
+     * @throws NullPointerException if <code>root</code> is null.
+     */
+    public RecursivePolledDirectory(PolledDirectory root) {
+        this(root, RecursivePolledDirectory::castToDirectory);
+    }
+
+    /**
+     * @param root the root directory of the tree to poll.
+     * @param toDirectory a function that returns the {@link PolledDirectory} of a
+     *        listed {@link FileElement} representing a directory.
+     * @throws NullPointerException if any argument is null.
+     */
+    public RecursivePolledDirectory(PolledDirectory root, Function<FileElement, PolledDirectory> toDirectory) {
+        if (root == null || toDirectory == null) {
+            throw new NullPointerException("null argument not allowed!");
+        }
+        this.root = root;
+        this.toDirectory = toDirectory;
+    }
+
+    private static PolledDirectory castToDirectory(FileElement file) {
+        if (file instanceof PolledDirectory) {
+            return (PolledDirectory) file;
+        }
+        String message = "Directory '%s' (%s) does not implement %s. Construct the %s with "
+                + "a function that returns the PolledDirectory of a listed directory.";
+        throw new IllegalStateException(String.format(message, file.getName(), file.getClass().getName(),
+                PolledDirectory.class.getSimpleName(), RecursivePolledDirectory.class.getSimpleName()));
+    }
+
+    /**
+     * Enables incremental rescans: the listing of a sub-directory is kept
+     * between poll-cycles, and only listed again when the
+     * {@link FileElement#lastModified()} of the sub-directory has changed.
+     * Sub-directories of an unchanged directory are still checked, one by one,
+     * with a fresh stat of each: a kept {@link JavaNioPathAdapter} is stat'ed
+     * again, and for a kept {@link CachedFileElement} the {@link PolledDirectory}
+     * returned by the function given to the constructor is asked, and must
+     * implement {@link FileElement}. Other kept {@link FileElement}s must look up
+     * {@link FileElement#lastModified()} live, like {@link JavaIoFileAdapter} does.
+     * <p>
+     * Adding, removing or renaming a file changes the last modified time of its
+     * directory on most file systems, while modifying the content of a file does
+     * not. Modified files in an unchanged directory are therefore only detected
+     * if the kept {@link FileElement}s look up {@link FileElement#lastModified()}
+     * live, like {@link JavaIoFileAdapter} does. The root directory is listed
+     * every poll-cycle.
+     * <p>
+     * Call this method before the directory is added to a {@link DirectoryPoller}.
+     *
+     * @return this {@link RecursivePolledDirectory}
+     */
+    public RecursivePolledDirectory enableIncrementalRescans() {
+        incrementalRescansEnabled = true;
+        return this;
+    }
+
+    /**
+     * @return the root directory of the polled tree.
+     */
+    public PolledDirectory getRoot() {
+        return root;
+    }
+
+    @Override
+    public Set<FileElement> listFiles() throws IOException {
+        Set<FileElement> result = new LinkedHashSet<>();
+        Map<String, Subtree> scanned = new HashMap<>();
+        Set<Path> visited = new HashSet<>();
+        isFirstVisit(root, visited);
+        collect("", listDirectory(root), true, result, scanned, visited);
+        // Subtrees not scanned this time have been removed.
+        subtrees = scanned;
+        return result;
+    }
+
+    /*
+     * The files of the root, and of re-listed sub-directories, are listed in
+     * this poll-cycle. Those of a kept listing are as of an earlier poll-cycle.
+     */
+    private void collect(String prefix, Collection<? extends FileElement> files, boolean isListedNow,
+            Set<FileElement> result, Map<String, Subtree> scanned, Set<Path> visited) throws IOException {
+        for (FileElement file : files) {
+            String relativePath = prefix + file.getName();
+            result.add(new RelativeFileElement(relativePath, file));
+            if (!file.isDirectory()) {
+                continue;
+            }
+            PolledDirectory directory = toDirectory.apply(file);
+            if (!isFirstVisit(directory, visited)) {
+                continue;
+            }
+            if (!incrementalRescansEnabled) {
+                collect(relativePath + SEPARATOR, listDirectory(directory), true, result, scanned, visited);
+                continue;
+            }
+            long lastModified = isListedNow ? file.lastModified() : currentLastModified(file, directory);
+            Subtree subtree = subtrees.get(relativePath);
+            boolean isRelisted = subtree == null || subtree.lastModified != lastModified;
+            if (isRelisted) {
+                subtree = new Subtree(lastModified, new ArrayList<>(listDirectory(directory)));
+            }
+            scanned.put(relativePath, subtree);
+            collect(relativePath + SEPARATOR, subtree.files, isRelisted, result, scanned, visited);
+        }
+    }
+
+    /*
+     * Returns false if the given directory has already been listed in this
+     * poll-cycle, reached through a symbolic link or junction. Descending into
+     * it again would list the same files under ever longer paths. Only
+     * JavaIoFileAdapter and JavaNioPathAdapter directories are checked.
+     */
+    private static boolean isFirstVisit(PolledDirectory directory, Set<Path> visited) throws IOException {
+        Path path;
+        if (directory instanceof JavaNioPathAdapter) {
+            path = ((JavaNioPathAdapter) directory).getPath();
+        } else if (directory instanceof JavaIoFileAdapter) {
+            path = ((JavaIoFileAdapter) directory).getFile().toPath();
+        } else {
+            return true;
+        }
+        return visited.add(path.toRealPath());
+    }
+
+    /*
+     * A directory in a kept listing may answer lastModified() from the
+     * attributes read when it was listed, which would hide changes below it.
+     */
+    private static long currentLastModified(FileElement file, PolledDirectory directory) throws IOException {
+        if (file instanceof JavaNioPathAdapter) {
+            return new JavaNioPathAdapter(((JavaNioPathAdapter) file).getPath()).lastModified();
+        }
+        if (file instanceof CachedFileElement) {
+            if (directory instanceof FileElement) {
+                return currentLastModified((FileElement) directory, directory);
+            }
+            String message = "Directory '%s' is a %s, whose last modified time is not looked up live. "
+                    + "Incremental rescans of %s need a function returning a PolledDirectory "
+                    + "that also implements %s.";
+            throw new IllegalStateException(String.format(message, file.getName(),
+                    CachedFileElement.class.getSimpleName(), RecursivePolledDirectory.class.getSimpleName(),
+                    FileElement.class.getSimpleName()));
+        }
+        return file.lastModified();
+    }
+
+    private static Set<FileElement> listDirectory(PolledDirectory directory) throws IOException {
+        Set<FileElement> files = directory.listFiles();
+        if (files == null) {
+            String message = "Unknown underlying IO-error when listing files "
+                    + "in directory: '%s'. Method listFiles() returned null.";
+            throw new IOException(String.format(message, directory));
+        }
+        return files;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 + root.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        RecursivePolledDirectory other = (RecursivePolledDirectory) obj;
+        return root.equals(other.root);
+    }
+
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+}
@@ -0,0 +1,52 @@
+package com.github.drapostolos.rdp4j;
+
+import java.io.IOException;
+
+import com.github.drapostolos.rdp4j.spi.FileElement;
+
+/**
+ * A {@link FileElement} listed by a {@link RecursivePolledDirectory}, named by
+ * its path relative to the root of the polled tree. Example: "a/b/file.txt".
+ * All other calls are delegated to the {@link FileElement} listed by the
+ * sub-directory.
+ */
+public final class RelativeFileElement implements FileElement {
+    private final String relativePath;
+    private final FileElement file;
+
+    RelativeFileElement(String relativePath, FileElement file) {
+        this.relativePath = relativePath;
+        this.file = file;
+    }
+
+    /**
+     * @return the {@link FileElement} as listed by its own directory.
+     */
+    public FileElement getFileElement() {
+        return file;
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return file.lastModified();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return file.isDirectory();
+    }
+
+    /**
+     * @return the path of this file relative to the root of the polled tree,
+     *         with '/' as separator.
+     */
+    @Override
+    public String getName() {
+        return relativePath;
+    }
+
+    @Override
+    public String toString() {
+        return relativePath;
+    }
+}
@@ -1,13 +1,24 @@
 package com.github.drapostolos.rdp4j;
 
+import static java.util.Collections.singleton;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,25 +30,93 @@ import com.github.drapostolos.rdp4j.spi.PolledDirectory;
  * according to the setting of the directory poller. It investigates the
  * directory in question and notify listeners if files are added/removed/modified,
  * or if IO Error has been raised/ceased.
+ * <p>
+ * In pipelined mode this class is not run periodically. Instead each
+ * {@link Poller} is re-armed on the scheduler as soon as its own poll is done,
+ * so a slow directory only delays itself. Directories added with an interval of
+ * their own are polled the same way in periodic mode, and are left out of the
+ * poll-cycles run periodically.
  */
 final class ScheduledRunnable implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(ScheduledRunnable.class);
+    private static final Comparator<Poller> HIGHEST_PRIORITY_FIRST =
+            Comparator.comparingInt(Poller::getPriority).reversed();
     final CopyOnWriteArraySet<Poller> pollers;
     final ExecutorService executor;
+    private final ExecutorService attributeExecutor;
+    private final boolean isAttributeExecutorOwned;
+    private final boolean isExecutorShared;
+    private volatile boolean isShutdown = false;
+    private final boolean isPolledOnSchedulerThread;
+    private volatile ScheduledExecutorService pipelineScheduler;
+    private final Object pipelineLock = new Object();
+    private int pipelinedPollsInProgress = 0;
+    // Re-armed pollers due to be polled, guarded by itself.
+    private final PriorityQueue<Poller> duePollers = new PriorityQueue<>(HIGHEST_PRIORITY_FIRST);
     private final DirectoryPoller dp;
     private final ListenerNotifier notifier;
+    private final Object pollCycleStatsLock = new Object();
+    private long pollCycleCount = 0;
+    private long lastPollCycleNanos = 0;
+    private long maxPollCycleNanos = 0;
 
     ScheduledRunnable(DirectoryPoller directoryPoller) {
         dp = directoryPoller;
         this.notifier = dp.notifier;
-        pollers = dp.directories.entrySet().stream()
-        .map(e -> new Poller(dp, e.getKey(), e.getValue()))
-        .collect(toCollection(CopyOnWriteArraySet::new));
-        if (dp.parallelDirectoryPollingEnabled) {
+        ExecutorService virtualThreadExecutor = null;
+        if (dp.virtualThreadPollingEnabled) {
+            virtualThreadExecutor = Util.newVirtualThreadPerTaskExecutor();
+            if (virtualThreadExecutor == null) {
+                LOG.warn("Virtual threads are not supported by this Java runtime. "
+                        + "Falling back to parallel polling with platform threads.");
+            }
+        }
+        isExecutorShared = virtualThreadExecutor == null && dp.pollingThreadPool != null;
+        if (virtualThreadExecutor != null) {
+            executor = virtualThreadExecutor;
+        } else if (isExecutorShared) {
+            executor = dp.pollingThreadPool.getExecutor();
+        } else if (dp.parallelDirectoryPollingEnabled) {
             executor = Executors.newCachedThreadPool();
         } else {
             executor = Executors.newSingleThreadExecutor();
         }
+        // Keeps directories from being polled in parallel, when not enabled.
+        isPolledOnSchedulerThread = !dp.parallelDirectoryPollingEnabled;
+        // Virtual threads are cheap enough to look up the attributes of each file in its own thread.
+        isAttributeExecutorOwned = virtualThreadExecutor == null && dp.fileAttributeLookupParallelism > 0;
+        if (isAttributeExecutorOwned) {
+            attributeExecutor = Executors.newFixedThreadPool(dp.fileAttributeLookupParallelism);
+        } else {
+            attributeExecutor = virtualThreadExecutor;
+        }
+        pollers = dp.directories.entrySet().stream()
+        .map(e -> newPoller(e.getKey(), previousStateOf(e.getKey(), e.getValue()), scheduleOf(e.getKey())))
+        .collect(toCollection(CopyOnWriteArraySet::new));
+    }
+
+    private Poller newPoller(PolledDirectory directory, Supplier<Set<CachedFileElement>> previousState,
+            DirectorySchedule schedule) {
+        return new Poller(dp, directory, previousState, schedule, attributeExecutor);
+    }
+
+    /*
+     * Previous state not read yet (by a LazyLoadingPersister) is read by the poller.
+     */
+    private Supplier<Set<CachedFileElement>> previousStateOf(PolledDirectory directory,
+            Set<CachedFileElement> previousState) {
+        Supplier<Set<CachedFileElement>> lazyPreviousState = dp.lazyPreviousStates.get(directory);
+        if (lazyPreviousState == null) {
+            return () -> previousState;
+        }
+        if (previousState.isEmpty()) {
+            return lazyPreviousState;
+        }
+        return () -> {
+            Set<CachedFileElement> result = new LinkedHashSet<>(previousState);
+            result.addAll(lazyPreviousState.get());
+            return result;
+        };
     }
 
     /**
@@ -45,12 +124,22 @@ final class ScheduledRunnable implements Runnable {
      */
     @Override
     public synchronized void run() {
+        long start = System.nanoTime();
         try {
-            notifier.beforePollingCycle(new BeforePollingCycleEvent(dp));
-            if (!executor.isShutdown()) {
-                executor.invokeAll(pollers);
+            List<Poller> duePollers = pollersDueThisPollCycle();
+            Set<PolledDirectory> polledDirectories = duePollers.stream()
+                    .map(Poller::getPolledDirectory)
+                    .collect(toCollection(LinkedHashSet::new));
+            notifier.beforePollingCycle(new BeforePollingCycleEvent(dp, polledDirectories));
+            if (!isShutdown && !executor.isShutdown()) {
+                executor.invokeAll(duePollers);
             }
-            notifier.afterPollingCycle(new AfterPollingCycleEvent(dp));
+            // invokeAll() returns normally if stopNow() interrupted the polls before this thread.
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            notifier.afterPollingCycle(new AfterPollingCycleEvent(dp, polledDirectories));
+            pollCycleDone(System.nanoTime() - start);
         } catch (InterruptedException e) {
             // allow thread to exit gracefully
         } catch (Throwable t) {
@@ -58,6 +147,164 @@ final class ScheduledRunnable implements Runnable {
         }
     }
 
+    /*
+     * Pollers due this poll-cycle, directories with an interval of their own
+     * excepted.
+     */
+    private List<Poller> pollersDueThisPollCycle() {
+        return pollers.stream()
+                .filter(poller -> !isSelfScheduled(poller))
+                .filter(Poller::isDueThisPollCycle)
+                .collect(toList());
+    }
+
+    private boolean isSelfScheduled(Poller poller) {
+        return dp.pipelinedPollingEnabled || poller.hasOwnSchedule();
+    }
+
+    /**
+     * Arms the pollers that are not polled in the periodic poll-cycles, i.e.
+     * all pollers in pipelined mode.
+     */
+    void startSelfScheduledPolling(ScheduledExecutorService scheduler) {
+        pipelineScheduler = scheduler;
+        pollers.stream().filter(this::isSelfScheduled).forEach(poller -> rearm(poller, 0));
+    }
+
+    /**
+     * @return <code>true</code> if directories with an interval of their own are
+     *         polled on the thread of the scheduler, and not in parallel.
+     */
+    boolean isPolledOnSchedulerThread() {
+        return isPolledOnSchedulerThread;
+    }
+
+    private void rearm(Poller poller, long delayInMillis) {
+        try {
+            pipelineScheduler.schedule(() -> submitPipelinedPoll(poller), delayInMillis, MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // DirectoryPoller is stopped.
+        }
+    }
+
+    /*
+     * Queues the poller, and polls the due poller with the highest priority
+     * once the scheduler has run all tasks due at the same time. So directories
+     * due at the same time are polled in priority order.
+     */
+    private void submitPipelinedPoll(Poller poller) {
+        if (isShutdown || poller.isRemoved()) {
+            return;
+        }
+        synchronized (duePollers) {
+            duePollers.add(poller);
+        }
+        try {
+            pipelineScheduler.execute(this::pollNextDuePoller);
+        } catch (RejectedExecutionException e) {
+            // DirectoryPoller is stopped.
+        }
+    }
+
+    private void pollNextDuePoller() {
+        Poller poller;
+        synchronized (duePollers) {
+            poller = duePollers.poll();
+        }
+        if (poller == null || isShutdown || poller.isRemoved()) {
+            return;
+        }
+        synchronized (pipelineLock) {
+            pipelinedPollsInProgress++;
+        }
+        if (isPolledOnSchedulerThread) {
+            pipelinedPoll(poller);
+            return;
+        }
+        try {
+            executor.execute(() -> pipelinedPoll(poller));
+        } catch (RejectedExecutionException e) {
+            pipelinedPollDone();
+        }
+    }
+
+    /*
+     * One poll-cycle for a single directory, with its own Before/AfterPollingCycleEvent.
+     */
+    private void pipelinedPoll(Poller poller) {
+        try {
+            if (!isShutdown && !poller.isRemoved()) {
+                long start = System.nanoTime();
+                Set<PolledDirectory> polledDirectory = singleton(poller.getPolledDirectory());
+                notifier.beforePollingCycle(new BeforePollingCycleEvent(dp, polledDirectory));
+                boolean crashed = false;
+                try {
+                    poller.call();
+                } catch (IllegalStateException e) {
+                    // Already logged by the poller, which is stopping the DirectoryPoller.
+                    crashed = true;
+                }
+                notifier.afterPollingCycle(new AfterPollingCycleEvent(dp, polledDirectory));
+                pollCycleDone(System.nanoTime() - start);
+                if (!crashed) {
+                    rearm(poller, poller.getMillisUntilNextPoll());
+                }
+            }
+        } catch (InterruptedException e) {
+            // allow thread to exit gracefully
+        } catch (Throwable t) {
+            LOG.error("Unexpected error!", t);
+        } finally {
+            pipelinedPollDone();
+        }
+    }
+
+    private void pollCycleDone(long nanos) {
+        synchronized (pollCycleStatsLock) {
+            pollCycleCount++;
+            lastPollCycleNanos = nanos;
+            maxPollCycleNanos = Math.max(maxPollCycleNanos, nanos);
+        }
+    }
+
+    /*
+     * Not synchronized on this, as run() holds that lock for a whole poll-cycle.
+     */
+    PollerMetrics getMetrics() {
+        Map<PolledDirectory, DirectoryMetrics> directories = new LinkedHashMap<>();
+        for (Poller poller : pollers) {
+            directories.put(poller.getPolledDirectory(), poller.getMetrics());
+        }
+        synchronized (pollCycleStatsLock) {
+            return new PollerMetrics(pollCycleCount, lastPollCycleNanos, maxPollCycleNanos,
+                    notifier.getListenerErrorCount(), directories);
+        }
+    }
+
+    private void pipelinedPollDone() {
+        synchronized (pipelineLock) {
+            pipelinedPollsInProgress--;
+            pipelineLock.notifyAll();
+        }
+    }
+
+    private void awaitPipelinedPolls() {
+        synchronized (pipelineLock) {
+            while (pipelinedPollsInProgress > 0) {
+                try {
+                    pipelineLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private DirectorySchedule scheduleOf(PolledDirectory directory) {
+        return dp.schedules.getOrDefault(directory, DirectorySchedule.DEFAULT);
+    }
+
     void addListener(Rdp4jListener listener) {
         notifier.addListener(listener);
     }
@@ -67,19 +314,63 @@ final class ScheduledRunnable implements Runnable {
     }
 
     void addDirectory(PolledDirectory directory) {
-        pollers.add(new Poller(dp, directory, new LinkedHashSet<>()));
+        addDirectory(directory, DirectorySchedule.DEFAULT);
+    }
+
+    void addDirectory(PolledDirectory directory, DirectorySchedule schedule) {
+        Poller poller = newPoller(directory, LinkedHashSet::new, schedule);
+        if (pollers.add(poller) && pipelineScheduler != null && isSelfScheduled(poller)) {
+            rearm(poller, 0);
+        }
     }
 
     void removeDirectory(PolledDirectory directory) {
-        pollers.remove(new Poller(dp, directory, new LinkedHashSet<>()));
+        boolean isRemoved = false;
+        for (Poller poller : pollers) {
+            if (poller.getPolledDirectory().equals(directory)) {
+                poller.markRemoved();
+                isRemoved |= pollers.remove(poller);
+            }
+        }
+        if (isRemoved) {
+            notifier.directoryRemoved(directory);
+        }
     }
 
+    /*
+     * A shared executor is owned by the client, and is never shut down here.
+     * In periodic mode there is nothing to await either, as run() blocks until
+     * all pollers of a poll-cycle are done.
+     */
     void shutdown() {
-        executor.shutdown();
+        isShutdown = true;
+        if (!isExecutorShared) {
+            executor.shutdown();
+        }
+    }
+
+    /*
+     * Interrupts ongoing polls not run by the (interrupted) scheduler thread:
+     * those of pipelined directories and directories with an interval of their
+     * own, also in periodic mode.
+     */
+    void shutdownNow() {
+        isShutdown = true;
+        if (!isExecutorShared) {
+            executor.shutdownNow();
+        }
     }
 
     void awaitTermination() {
-        Util.awaitTermination(executor);
+        if (!isExecutorShared) {
+            Util.awaitTermination(executor);
+        }
+        awaitPipelinedPolls();
+        // Only once no poller can submit lookups any more.
+        if (isAttributeExecutorOwned) {
+            attributeExecutor.shutdown();
+            Util.awaitTermination(attributeExecutor);
+        }
     }
 
     Set<PolledDirectory> getDirectories() {
@@ -10,11 +10,16 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
 import org.slf4j.Logger;
@@ -23,34 +28,71 @@ import org.slf4j.LoggerFactory;
 import com.github.drapostolos.rdp4j.spi.Persister;
 import com.github.drapostolos.rdp4j.spi.PolledDirectory;
 
+/*
+ * In crash-safe mode, the state is written in the background, to a temporary file
+ * that then replaces the persisted file, and the replaced file is kept as the
+ * previous generation. It is read when the persisted file cannot be read.
+ *
+ * The writes in the background are tracked per file, not per instance, so a
+ * DirectoryPoller restarted on the same file reads the state only once it is
+ * written, and its writes are done after those of the stopped DirectoryPoller.
+ */
 class SerializeToFilePersister implements Persister {
 	private static final Logger LOG = LoggerFactory.getLogger(SerializeToFilePersister.class);
 	private Path persistedFile;
 	private Function<String, PolledDirectory> stringToDirFunction;
 	private Function<PolledDirectory, String> dirToStringFunction;
+	private static final ConcurrentMap<Path, Future<Void>> PENDING_WRITES = new ConcurrentHashMap<>();
+	private final boolean crashSafe;
 
 	SerializeToFilePersister(Path file, Function<String, PolledDirectory> stringToDir,
 			Function<PolledDirectory, String> dirToString) {
+		this(file, stringToDir, dirToString, false);
+	}
+
+	SerializeToFilePersister(Path file, Function<String, PolledDirectory> stringToDir,
+			Function<PolledDirectory, String> dirToString, boolean crashSafe) {
 				this.persistedFile = file;
 				this.stringToDirFunction = stringToDir;
 				this.dirToStringFunction = dirToString;
+				this.crashSafe = crashSafe;
 	}
 
 	@Override
 	public boolean containsData() {
-		return Files.exists(persistedFile);
+		awaitPendingWrite();
+		return Files.exists(persistedFile)
+				|| (crashSafe && Files.exists(AtomicFileWriter.previousGenerationOf(persistedFile)));
 	}
 
 	@Override
 	public Map<PolledDirectory, Set<CachedFileElement>> readData() {
-		try (	FileInputStream fis = new FileInputStream(persistedFile.toFile());
+		awaitPendingWrite();
+		try {
+			return readData(persistedFile);
+		} catch (Exception e) {
+			Path previousGeneration = AtomicFileWriter.previousGenerationOf(persistedFile);
+			if (!crashSafe || !Files.exists(previousGeneration)) {
+				throw new IllegalStateException(e);
+			}
+			LOG.warn("Unable to read persisted state from " + persistedFile
+					+ ", reading previous generation instead: " + previousGeneration, e);
+			try {
+				return readData(previousGeneration);
+			} catch (Exception e2) {
+				e2.addSuppressed(e);
+				throw new IllegalStateException(e2);
+			}
+		}
+	}
+
+	private Map<PolledDirectory, Set<CachedFileElement>> readData(Path file) throws Exception {
+		try (	FileInputStream fis = new FileInputStream(file.toFile());
 				ObjectInputStream ois = new ObjectInputStream(fis);){
 			@SuppressWarnings("unchecked")
 			Map<String, Set<CachedFileElement>> files = (Map<String, Set<CachedFileElement>>) ois.readObject();
 			log(files, "Found persisted");
 			return convertMapKey(files, stringToDirFunction);
-		} catch (Exception e) {
-			throw new IllegalStateException(e);
 		}
 	}
 	
@@ -62,6 +104,10 @@ class SerializeToFilePersister implements Persister {
 	
 	@Override
 	public void writeData(Map<PolledDirectory, Set<CachedFileElement>> data) {
+		if (crashSafe) {
+			writeDataInBackground(data);
+			return;
+		}
 		createParentDirectoryIfMissing(persistedFile);
 		try (FileOutputStream fos = new FileOutputStream(persistedFile.toFile());
 				ObjectOutputStream oos = new ObjectOutputStream(fos)) {
@@ -73,6 +119,58 @@ class SerializeToFilePersister implements Persister {
 		}
 	}
 
+	/*
+	 * Keeps DirectoryPoller.stop() from waiting for the write. The writing thread
+	 * is not a daemon, so the JVM does not exit before the write is done.
+	 */
+	private void writeDataInBackground(Map<PolledDirectory, Set<CachedFileElement>> data) {
+		Map<String, Set<CachedFileElement>> files = convertMapKey(data, dirToStringFunction);
+		PENDING_WRITES.compute(pendingWriteKey(), (file, previousWrite) -> writeInBackground(files, previousWrite));
+	}
+
+	private Future<Void> writeInBackground(Map<String, Set<CachedFileElement>> files, Future<Void> previousWrite) {
+		return Util.invokeTask("DP-StatePersister", () -> {
+			if (previousWrite != null) {
+				previousWrite.get();
+			}
+			try {
+				AtomicFileWriter.write(persistedFile, true, channel -> {
+					ObjectOutputStream oos = new ObjectOutputStream(Channels.newOutputStream(channel));
+					oos.writeObject(files);
+					oos.flush();
+				});
+				log(files, "Persisted data");
+			} catch (Exception e) {
+				LOG.error("Unable to persist state to: " + persistedFile, e);
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Blocks until the state written in the background to the persisted file, if
+	 * any, by this or any other instance, is persisted.
+	 */
+	void awaitPendingWrite() {
+		Path key = pendingWriteKey();
+		Future<Void> write = PENDING_WRITES.get(key);
+		if (write == null) {
+			return;
+		}
+		try {
+			write.get();
+			PENDING_WRITES.remove(key, write);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// already logged.
+		}
+	}
+
+	private Path pendingWriteKey() {
+		return persistedFile.toAbsolutePath().normalize();
+	}
+
 	private void createParentDirectoryIfMissing(Path storage) {
 		Path parent = storage.getParent();
 		if(parent != null) {
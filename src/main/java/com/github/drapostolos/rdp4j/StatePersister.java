@@ -11,7 +11,11 @@ class StatePersister implements DirectoryPollerListener {
 
 	@Override
 	public void beforeStart(BeforeStartEvent event) {
-		if(persister.containsData()) {
+		if (persister instanceof LazyLoadingPersister) {
+			if (persister.containsData()) {
+				((LazyLoadingPersister) persister).readDataLazily().forEach(event::addPolledDirectory);
+			}
+		} else if(persister.containsData()) {
 			persister.readData().entrySet().forEach(entry -> {
 				event.addPolledDirectory(entry.getKey(), entry.getValue());
 			});
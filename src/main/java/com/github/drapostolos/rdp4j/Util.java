@@ -3,8 +3,10 @@ package com.github.drapostolos.rdp4j;
 import static java.lang.Long.MAX_VALUE;
 import static java.util.concurrent.TimeUnit.DAYS;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
 
@@ -35,6 +37,19 @@ final class Util {
         }
     }
 
+    /*
+     * Looked up by reflection, as this library is compiled for Java 8.
+     * Returns null if the runtime does not support virtual threads.
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
     static <T> Future<T> invokeTask(String threadName, Callable<T> callable) {
         FutureTask<T> task = new FutureTask<T>(callable);
         Thread t = new Thread(task);
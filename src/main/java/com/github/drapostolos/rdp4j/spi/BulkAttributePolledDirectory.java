@@ -0,0 +1,62 @@
+package com.github.drapostolos.rdp4j.spi;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.github.drapostolos.rdp4j.CachedFileElement;
+import com.github.drapostolos.rdp4j.DirectoryPoller;
+import com.github.drapostolos.rdp4j.DirectoryPollerException;
+import com.github.drapostolos.rdp4j.IoErrorListener;
+import com.github.drapostolos.rdp4j.IoErrorRaisedEvent;
+
+/**
+ * Optional extension of {@link PolledDirectory}, for backends that return the
+ * attributes of each file in the listing response itself. Like FTP MLSD,
+ * SFTP readdir, object-store listings or a {@link java.nio.file.DirectoryStream}
+ * with attributes.
+ * <p>
+ * The {@link DirectoryPoller} lists the files of implementations of this
+ * interface with {@link #listCachedFiles()}, and makes no further calls per file
+ * to {@link FileElement#lastModified()} or {@link FileElement#isDirectory()}.
+ *
+ * @see CachedFileElement#of(String, long, boolean)
+ * @see <a href="https://github.com/drapostolos/rdp4j/wiki/User-Guide">User-Guide</a>
+ */
+public interface BulkAttributePolledDirectory extends PolledDirectory {
+
+    /**
+     * Returns a snapshot of the current content in this directory, with the
+     * attributes of each file as listed, i.e. built with
+     * {@link CachedFileElement#of(String, long, boolean)}.
+     * <p>
+     * Returning a {@code null} value will be treated the same as if an {@link IOException} was
+     * thrown. A file with a {@code 0L} last modified time will be treated the same as if
+     * an {@link IOException} was thrown.
+     * <p>
+     * NOTE! <br>
+     * All files within a directory are expected to have unique names.
+     *
+     * @return a list of {@link CachedFileElement}s in this directory
+     * @throws IOException if not possible to list files in this directory, due
+     *         to I/O error. Throwing {@link IOException} will fire a {@link IoErrorRaisedEvent}
+     *         event in {@link IoErrorListener#ioErrorRaised(IoErrorRaisedEvent)}.
+     * @throws DirectoryPollerException For errors you don't want firing {@link IoErrorRaisedEvent}
+     *         events for. This will cause the Directory-Poller
+     *         to silently skip this poll-cycle and wait for next poll-cycle.
+     * @throws RuntimeException if any unexpected crashes occurs. This will
+     *         cause the Directory-Poller to log an error message (along with the causing
+     *         {@link RuntimeException}) and stop the {@link DirectoryPoller}.
+     */
+    Set<CachedFileElement> listCachedFiles() throws IOException;
+
+    /**
+     * Returns the files listed by {@link #listCachedFiles()}. Not called by the
+     * {@link DirectoryPoller}.
+     */
+    @Override
+    default Set<FileElement> listFiles() throws IOException {
+        Set<CachedFileElement> files = listCachedFiles();
+        return files == null ? null : new LinkedHashSet<>(files);
+    }
+}
@@ -44,6 +44,47 @@ public interface PolledDirectory {
      */
     Set<FileElement> listFiles() throws IOException;
 
+    /**
+     * Override to return <code>true</code> if this directory lists its files in
+     * ascending order of their names, compared by Unicode code point, i.e. by the
+     * unsigned bytes of the UTF-8 encoded names. This is the order of most
+     * object-store listings, for example. The order is case-sensitive.
+     * <p>
+     * With {@link com.github.drapostolos.rdp4j.DirectoryPollerBuilder#enableCompactPreviousState()},
+     * the {@link DirectoryPoller} then finds the added, removed and modified files of
+     * a sorted listing in a single pass over the listing and the previous state, while
+     * the files are listed. Files listed after the listing is found not to be sorted
+     * are compared as those of any other listing.
+     * 
+     * @return <code>true</code> if the listing of this directory is sorted by name.
+     *         <code>false</code> by default.
+     */
+    default boolean isListingSorted() {
+        return false;
+    }
+
+    /**
+     * Override to return a cheap indicator of changes to this directory, like an
+     * ETag, a change counter or a checksum of the listing. The {@link DirectoryPoller}
+     * reads the token before each listing, and skips listing, filtering and comparing
+     * the files of this directory when the token equals (see {@link Object#equals(Object)})
+     * the token read before the last successful listing.
+     * <p>
+     * The token must change whenever a file is added, removed or modified. Note that the
+     * last modified time of a directory on a local file system does not change when the
+     * content of one of its files does.
+     * <p>
+     * Errors are handled as for {@link #listFiles()}.
+     *
+     * @return the current change token of this directory, or <code>null</code> if
+     *         there is none, in which case the directory is always listed.
+     *         <code>null</code> by default.
+     * @throws IOException if not possible to read the token due to I/O error.
+     */
+    default Object getChangeToken() throws IOException {
+        return null;
+    }
+
     /**
      * It is recommended to implement this method if clients wants to remove this
      * {@link PolledDirectory} from the {@link DirectoryPoller}.
@@ -0,0 +1,76 @@
+package com.github.drapostolos.rdp4j.spi;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.github.drapostolos.rdp4j.CachedFileElement;
+import com.github.drapostolos.rdp4j.DirectoryPoller;
+import com.github.drapostolos.rdp4j.DirectoryPollerException;
+import com.github.drapostolos.rdp4j.IoErrorListener;
+import com.github.drapostolos.rdp4j.IoErrorRaisedEvent;
+
+/**
+ * Optional extension of {@link PolledDirectory}, for backends that list a
+ * directory piece by piece. Like object-store listings that are paged, or a
+ * {@link java.nio.file.DirectoryStream}.
+ * <p>
+ * The {@link DirectoryPoller} lists the files of implementations of this
+ * interface with {@link #visitFiles(Visitor)}, and filters each file as it is
+ * visited. So the whole listing is never held in memory at once, in addition to
+ * the files kept by the {@link DirectoryPoller}.
+ * <p>
+ * Files that are {@link CachedFileElement}s are used as they are, see
+ * {@link BulkAttributePolledDirectory}.
+ *
+ * @see <a href="https://github.com/drapostolos/rdp4j/wiki/User-Guide">User-Guide</a>
+ */
+public interface StreamingPolledDirectory extends PolledDirectory {
+
+    /**
+     * Receives the files of a directory, one at a time.
+     */
+    @FunctionalInterface
+    interface Visitor {
+
+        /**
+         * @param file a file in the visited directory.
+         * @throws IOException if the attributes of the file cannot be read. To be
+         *         rethrown by {@link StreamingPolledDirectory#visitFiles(Visitor)}.
+         */
+        void visit(FileElement file) throws IOException;
+    }
+
+    /**
+     * Passes each file currently in this directory to the given visitor, and
+     * returns when all files are visited. A listing that fails part way must
+     * throw, as the files not visited would otherwise be reported as removed.
+     * <p>
+     * NOTE! <br>
+     * All files within a directory are expected to have unique names.
+     *
+     * @param visitor receiver of the files in this directory.
+     * @throws IOException if not possible to list files in this directory, due
+     *         to I/O error, or rethrown from the visitor. Throwing {@link IOException}
+     *         will fire a {@link IoErrorRaisedEvent} event in
+     *         {@link IoErrorListener#ioErrorRaised(IoErrorRaisedEvent)}.
+     * @throws DirectoryPollerException For errors you don't want firing {@link IoErrorRaisedEvent}
+     *         events for. This will cause the Directory-Poller
+     *         to silently skip this poll-cycle and wait for next poll-cycle.
+     * @throws RuntimeException if any unexpected crashes occurs. This will
+     *         cause the Directory-Poller to log an error message (along with the causing
+     *         {@link RuntimeException}) and stop the {@link DirectoryPoller}.
+     */
+    void visitFiles(Visitor visitor) throws IOException;
+
+    /**
+     * Returns all files visited by {@link #visitFiles(Visitor)}. Not called by the
+     * {@link DirectoryPoller}.
+     */
+    @Override
+    default Set<FileElement> listFiles() throws IOException {
+        Set<FileElement> files = new LinkedHashSet<>();
+        visitFiles(files::add);
+        return files;
+    }
+}
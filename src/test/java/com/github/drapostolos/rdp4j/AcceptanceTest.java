@@ -18,6 +18,7 @@ import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -423,6 +424,30 @@ public class AcceptanceTest extends EventVerifier {
         dp.stopNow();
     }
 
+    @Test(timeout = 2000)
+    public void canInterruptPollOfDirectoryWithOwnInterval() throws Exception {
+
+        // given 
+        final CountDownLatch latch = new CountDownLatch(1);
+        Mockito.when(directoryMock.listFiles()).then(invocation -> {
+            latch.countDown();
+            SECONDS.sleep(10);
+            return list("file1.txt/1");
+        });
+
+        // when
+        dp = builder
+                .addPolledDirectory(directoryMock, 10, TimeUnit.MILLISECONDS, 0)
+                .addListener(new AbstractRdp4jListener() {})
+                .enableParallelPollingOfDirectories()
+                .setPollingInterval(10, TimeUnit.MILLISECONDS)
+                .start();
+
+        // then
+        latch.await();
+        dp.stopNow();
+    }
+
     @Test
     public void canStartAsynchronously() throws Exception {
         // given 
@@ -728,4 +753,45 @@ public class AcceptanceTest extends EventVerifier {
                 AfterStopEvent.class);
         Mockito.verifyNoMoreInteractions(listenerMock);
     }
+
+    @Test
+    public void slowDirectoryDoesNotDelayOtherDirectoriesWhenPipelined() throws Exception {
+        // given
+        CountDownLatch releaseSlowDirectory = new CountDownLatch(1);
+        CountDownLatch fastDirectoryPolls = new CountDownLatch(10);
+        PolledDirectory slowDirectory = Mockito.mock(PolledDirectory.class);
+        Mockito.when(slowDirectory.listFiles()).then(invocation -> {
+            releaseSlowDirectory.await();
+            return list();
+        });
+        Mockito.when(directoryMock.listFiles()).then(invocation -> {
+            fastDirectoryPolls.countDown();
+            return list("a.txt/12");
+        });
+        Set<Integer> polledDirectoriesPerCycle = new ConcurrentSkipListSet<>();
+
+        // when
+        dp = builder
+                .addPolledDirectory(slowDirectory)
+                .addPolledDirectory(directoryMock)
+                .addListener(new AbstractRdp4jListener() {
+                    @Override
+                    public void beforePollingCycle(BeforePollingCycleEvent event) {
+                        polledDirectoriesPerCycle.add(event.getPolledDirectories().size());
+                    }
+                })
+                .enablePipelinedPolling()
+                .setPollingInterval(5, TimeUnit.MILLISECONDS)
+                .start();
+
+        // then
+        try {
+            assertThat(fastDirectoryPolls.await(10, SECONDS)).isTrue();
+        } finally {
+            releaseSlowDirectory.countDown();
+        }
+        dp.stop();
+        assertThat(dp.isPipelinedPollingEnabled()).isTrue();
+        assertThat(polledDirectoriesPerCycle).containsOnly(1);
+    }
 }
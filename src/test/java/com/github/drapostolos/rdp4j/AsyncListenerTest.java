@@ -0,0 +1,177 @@
+package com.github.drapostolos.rdp4j;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+import com.github.drapostolos.rdp4j.AsyncListener.OverflowPolicy;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+public class AsyncListenerTest {
+
+    private PolledDirectory directoryMock = Mockito.mock(PolledDirectory.class);
+    private List<String> delivered = new CopyOnWriteArrayList<>();
+    private CountDownLatch deliveryStarted = new CountDownLatch(1);
+    private CountDownLatch releaseDelivery = new CountDownLatch(1);
+    private DirectoryListener slowListener;
+    private volatile Thread deliveringThread;
+
+    @Before
+    public void testFixture() throws Exception {
+        slowListener = new DirectoryListener() {
+
+            @Override
+            public void fileAdded(FileAddedEvent event) throws InterruptedException {
+                record("added", event);
+            }
+
+            @Override
+            public void fileRemoved(FileRemovedEvent event) throws InterruptedException {
+                record("removed", event);
+            }
+
+            @Override
+            public void fileModified(FileModifiedEvent event) throws InterruptedException {
+                record("modified", event);
+            }
+
+            private void record(String type, EventExposingFileElement event) throws InterruptedException {
+                deliveringThread = Thread.currentThread();
+                deliveryStarted.countDown();
+                releaseDelivery.await();
+                delivered.add(type + ":" + event.getCachedFileElement().getName()
+                        + "/" + event.getCachedFileElement().lastModified());
+            }
+        };
+    }
+
+    @Test
+    public void shouldDeliverAllEventsInOrderBeforeAfterStopReturns() throws Exception {
+        // given
+        AsyncListener listener = new AsyncListener(slowListener, 10, OverflowPolicy.BLOCK);
+        releaseDelivery.countDown();
+
+        // when
+        listener.fileAdded(added("fileA/1"));
+        listener.fileModified(modified("fileA/2"));
+        listener.fileRemoved(removed("fileA/2"));
+        listener.afterStop(new AfterStopEvent(null, new HashSet<>()));
+
+        // then
+        assertThat(delivered).containsExactly("added:fileA/1", "modified:fileA/2", "removed:fileA/2");
+        assertThat(listener.getQueueSize()).isEqualTo(0);
+        assertThat(listener.getLagInMillis()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldDropOldestQueuedEventWhenFull() throws Exception {
+        // given
+        AsyncListener listener = new AsyncListener(slowListener, 2, OverflowPolicy.DROP_OLDEST);
+        listener.fileAdded(added("fileA/1"));
+        deliveryStarted.await();
+
+        // when
+        listener.fileAdded(added("fileB/1"));
+        listener.fileAdded(added("fileC/1"));
+        listener.fileAdded(added("fileD/1"));
+
+        // then
+        assertThat(listener.getQueueSize()).isEqualTo(2);
+        assertThat(listener.getDroppedEventCount()).isEqualTo(1);
+        releaseDelivery.countDown();
+        listener.afterStop(new AfterStopEvent(null, new HashSet<>()));
+        assertThat(delivered).containsExactly("added:fileA/1", "added:fileC/1", "added:fileD/1");
+    }
+
+    @Test
+    public void shouldCoalesceEventsOfSameFileWhenFull() throws Exception {
+        // given
+        AsyncListener listener = new AsyncListener(slowListener, 2, OverflowPolicy.COALESCE);
+        listener.fileAdded(added("fileA/1"));
+        deliveryStarted.await();
+        listener.fileAdded(added("fileB/1"));
+        listener.fileRemoved(removed("fileC/1"));
+
+        // when
+        listener.fileModified(modified("fileB/2"));
+        listener.fileAdded(added("fileC/2"));
+
+        // then
+        assertThat(listener.getQueueSize()).isEqualTo(2);
+        assertThat(listener.getDroppedEventCount()).isEqualTo(2);
+        releaseDelivery.countDown();
+        listener.afterStop(new AfterStopEvent(null, new HashSet<>()));
+        assertThat(delivered).containsExactly("added:fileA/1", "added:fileB/2", "modified:fileC/2");
+    }
+
+    @Test
+    public void shouldDropBothEventsWhenAddedFileIsRemovedAndQueueIsFull() throws Exception {
+        // given
+        AsyncListener listener = new AsyncListener(slowListener, 1, OverflowPolicy.COALESCE);
+        listener.fileAdded(added("fileA/1"));
+        deliveryStarted.await();
+        listener.fileAdded(added("fileB/1"));
+
+        // when
+        listener.fileRemoved(removed("fileB/1"));
+
+        // then
+        assertThat(listener.getQueueSize()).isEqualTo(0);
+        releaseDelivery.countDown();
+        listener.afterStop(new AfterStopEvent(null, new HashSet<>()));
+        assertThat(delivered).containsExactly("added:fileA/1");
+    }
+
+    @Test
+    public void shouldEndDaemonThreadWhenRemovedAndQueueIsDelivered() throws Exception {
+        // given
+        AsyncListener listener = new AsyncListener(slowListener, 10, OverflowPolicy.BLOCK);
+        ListenerNotifier notifier = new ListenerNotifier(Mockito.mock(Logger.class),
+                new HashSet<Rdp4jListener>(Arrays.asList(listener)));
+        listener.fileAdded(added("fileA/1"));
+        listener.fileAdded(added("fileB/1"));
+        deliveryStarted.await();
+
+        // when
+        notifier.removeListener(listener);
+        releaseDelivery.countDown();
+        deliveringThread.join(5000);
+
+        // then
+        assertThat(deliveringThread.isDaemon()).isTrue();
+        assertThat(deliveringThread.isAlive()).isFalse();
+        assertThat(delivered).containsExactly("added:fileA/1", "added:fileB/1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityLessThanOne() throws Exception {
+        new AsyncListener(slowListener, 0, OverflowPolicy.BLOCK);
+    }
+
+    private FileAddedEvent added(String nameAndTime) {
+        return new FileAddedEvent(null, directoryMock, file(nameAndTime));
+    }
+
+    private FileRemovedEvent removed(String nameAndTime) {
+        return new FileRemovedEvent(null, directoryMock, file(nameAndTime));
+    }
+
+    private FileModifiedEvent modified(String nameAndTime) {
+        return new FileModifiedEvent(null, directoryMock, file(nameAndTime));
+    }
+
+    private static FileElementAndCache file(String nameAndTime) {
+        String[] t = nameAndTime.split("/");
+        CachedFileElement file = CachedFileElement.ofFile(t[0], Long.parseLong(t[1]));
+        return new FileElementAndCache(file, file);
+    }
+}
@@ -0,0 +1,75 @@
+package com.github.drapostolos.rdp4j;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+public class BinaryFilePersisterTest extends PersistedFileFixture {
+
+	@Before
+	public void setup() throws Exception {
+		// in a directory of its own, which is created when written.
+		persistedFile = tempDir.resolve("state").resolve("file.bin");
+	}
+
+	@Test
+	public void canReadWhatWasWritten() throws Exception {
+		// Given
+		data.get(dirA).add(CachedFileElement.ofFile("f\u00e5l\u00e9-\u4e2d", 1500000000001L));
+		data.get(dirA).add(CachedFileElement.ofFile("old", -42L));
+		data.put(new JavaIoFileAdapter(tempDir.resolve("empty").toFile()), new HashSet<>());
+		BinaryFilePersister persister = persister();
+
+		// When
+		persister.writeData(data);
+
+		// Then
+		Assertions.assertThat(persister.containsData()).isTrue();
+		Map<PolledDirectory, Set<CachedFileElement>> read = persister.readData();
+		Assertions.assertThat(read).isEqualTo(data);
+		for (CachedFileElement file : read.get(dirA)) {
+			Assertions.assertThat(file.isDirectory()).isEqualTo(file.getName().equals("dirC"));
+		}
+	}
+
+	@Test
+	public void canReadManyEntries() throws Exception {
+		// Given
+		Set<CachedFileElement> files = new HashSet<>();
+		for (int i = 0; i < 100000; i++) {
+			files.add(CachedFileElement.ofFile("file-" + i, 1500000000000L + i * 7919L % 100000));
+		}
+		data.clear();
+		data.put(new JavaIoFileAdapter(tempDir.toFile()), files);
+		BinaryFilePersister persister = persister();
+
+		// When
+		persister.writeData(data);
+
+		// Then
+		Assertions.assertThat(persister.readData()).isEqualTo(data);
+	}
+
+	@Test
+	public void shouldThrowWhenReadingFileOfOtherFormat() throws Exception {
+		// Given
+		new SerializeToFilePersister(persistedFile, str -> null, dir -> "dir").writeData(new HashMap<>());
+
+		// Then
+		Assertions.assertThatThrownBy(() -> persister().readData())
+		.isInstanceOf(IllegalStateException.class)
+		.hasMessageContaining("file.bin")
+		.hasRootCauseMessage("Not a persisted rdp4j state file: " + persistedFile);
+	}
+
+	private BinaryFilePersister persister() {
+		return new BinaryFilePersister(persistedFile, this::toDir, this::toString);
+	}
+}
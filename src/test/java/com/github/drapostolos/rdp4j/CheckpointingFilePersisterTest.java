@@ -0,0 +1,151 @@
+package com.github.drapostolos.rdp4j;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+public class CheckpointingFilePersisterTest extends PersistedFileFixture {
+
+	@Test
+	public void canRecoverLoggedChangesWithoutStateBeingWrittenAtStop() throws Exception {
+		// given
+		CheckpointingFilePersister persister = persister();
+		persister.logReplace(dirA, Arrays.asList(fileA, dirC));
+		persister.logReplace(dirB, Arrays.asList(fileB));
+		CachedFileElement modifiedFileA = CachedFileElement.ofFile("fileA", 1600000000000L);
+		persister.logDelta(dirA, Arrays.asList(modifiedFileA), Arrays.asList(dirC));
+		persister.endOfCycle();
+
+		// when
+		Map<PolledDirectory, Set<CachedFileElement>> read = persister().readData();
+
+		// then
+		Assertions.assertThat(Files.exists(persistedFile)).isFalse();
+		Assertions.assertThat(read.keySet()).containsOnly(dirA, dirB);
+		Assertions.assertThat(read.get(dirA)).containsOnly(modifiedFileA);
+		Assertions.assertThat(read.get(dirA).iterator().next().lastModified()).isEqualTo(1600000000000L);
+		Assertions.assertThat(read.get(dirB)).containsOnly(fileB);
+	}
+
+	@Test
+	public void ignoresAndTruncatesTornRecordAtEndOfLog() throws Exception {
+		// given
+		CheckpointingFilePersister persister = persister();
+		persister.logReplace(dirA, Arrays.asList(fileA));
+		persister.endOfCycle();
+		long validSize = Files.size(persister.getLogFile());
+		Files.write(persister.getLogFile(), new byte[] {0, 0, 0, 42, 1, 2}, APPEND);
+
+		// when
+		CheckpointingFilePersister recovered = persister();
+		Map<PolledDirectory, Set<CachedFileElement>> read = recovered.readData();
+		recovered.logDelta(dirA, Arrays.asList(fileB), Collections.emptyList());
+		recovered.endOfCycle();
+
+		// then
+		Assertions.assertThat(read.get(dirA)).containsOnly(fileA);
+		Assertions.assertThat(Files.size(persister.getLogFile())).isGreaterThan(validSize);
+		Assertions.assertThat(persister().readData().get(dirA)).containsOnly(fileA, fileB);
+	}
+
+	@Test
+	public void compactsLogIntoSnapshotEveryGivenNumberOfCycles() throws Exception {
+		// given
+		CheckpointingFilePersister persister = persister();
+		persister.logReplace(dirA, Arrays.asList(fileA, dirC));
+		persister.endOfCycle();
+		persister.logDelta(dirA, Collections.emptyList(), Arrays.asList(dirC));
+
+		// when
+		persister.endOfCycle();
+
+		// then
+		Assertions.assertThat(Files.size(persister.getLogFile())).isZero();
+		Assertions.assertThat(BinaryFilePersister.readState(persistedFile).get(toString(dirA)))
+				.containsOnly(fileA);
+		Assertions.assertThat(persister().readData().get(dirA)).containsOnly(fileA);
+	}
+
+	@Test
+	public void compactsLogIntoSnapshotWhenLogExceedsMaxSize() throws Exception {
+		// given
+		CheckpointingFilePersister persister = new CheckpointingFilePersister(
+				persistedFile, this::toDir, this::toString, 1000, 1);
+
+		// when
+		persister.logReplace(dirA, Arrays.asList(fileA));
+		persister.endOfCycle();
+
+		// then
+		Assertions.assertThat(Files.size(persister.getLogFile())).isZero();
+		Assertions.assertThat(persister().readData().get(dirA)).containsOnly(fileA);
+	}
+
+	@Test
+	public void writingFullStateEmptiesLog() throws Exception {
+		// given
+		CheckpointingFilePersister persister = persister();
+		persister.logReplace(dirA, Arrays.asList(fileA));
+		persister.endOfCycle();
+		data.remove(dirA);
+
+		// when
+		persister.writeData(data);
+
+		// then
+		Assertions.assertThat(Files.exists(persister.getLogFile())).isFalse();
+		Assertions.assertThat(persister().readData()).isEqualTo(data);
+	}
+
+	@Test
+	public void forgetsRemovedDirectoryWhenReplayingAndCompactingLog() throws Exception {
+		// given
+		CheckpointingFilePersister persister = persister();
+		persister.logReplace(dirA, Arrays.asList(fileA));
+		persister.logReplace(dirB, Arrays.asList(fileB));
+		persister.endOfCycle();
+
+		// when
+		persister.logRemove(dirA);
+
+		// then
+		Assertions.assertThat(persister().readData().keySet()).containsOnly(dirB);
+		persister.endOfCycle();
+		Assertions.assertThat(Files.size(persister.getLogFile())).isZero();
+		Assertions.assertThat(BinaryFilePersister.readState(persistedFile).keySet()).containsOnly(toString(dirB));
+	}
+
+	@Test
+	public void statePersisterLogsRemovalOfDirectoryAndIgnoresItsLateChanges() throws Exception {
+		// given
+		CheckpointingFilePersister persister = persister();
+		CheckpointingStatePersister statePersister = new CheckpointingStatePersister(persister);
+		DirectoryPoller dp = Mockito.mock(DirectoryPoller.class);
+		statePersister.initialContent(new InitialContentEvent(dp, dirA, Collections.emptyList()));
+		statePersister.initialContent(new InitialContentEvent(dp, dirB, Collections.emptyList()));
+		FileElementAndCache added = new FileElementAndCache(new StubbedFileElement("fileA", 1500000000000L), fileA);
+
+		// when
+		statePersister.directoryRemoved(dirA);
+		statePersister.directoryChanged(new DirectoryChangedEvent(dp, dirA, Arrays.asList(added),
+				Collections.emptyList(), Collections.emptyList()));
+		statePersister.afterPollingCycle(null);
+
+		// then
+		Assertions.assertThat(persister().readData().keySet()).containsOnly(dirB);
+	}
+
+	private CheckpointingFilePersister persister() {
+		return new CheckpointingFilePersister(persistedFile, this::toDir, this::toString, 2, 1024 * 1024);
+	}
+}
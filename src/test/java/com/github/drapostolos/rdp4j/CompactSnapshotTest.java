@@ -0,0 +1,117 @@
+package com.github.drapostolos.rdp4j;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class CompactSnapshotTest {
+
+    @Test
+    public void looksUpFilesByName() throws Exception {
+        // given
+        CompactSnapshot snapshot = CompactSnapshot.of(Arrays.asList(
+                CachedFileElement.ofFile("fileB", 2),
+                CachedFileElement.ofDir("dirA", 1),
+                CachedFileElement.ofFile("fileC", 3)));
+
+        // when
+        int index = snapshot.indexOf("dirA");
+
+        // then
+        assertThat(snapshot.size()).isEqualTo(3);
+        assertThat(snapshot.getName(index)).isEqualTo("dirA");
+        assertThat(snapshot.lastModified(index)).isEqualTo(1);
+        assertThat(snapshot.get(index).isDirectory()).isTrue();
+        assertThat(snapshot.get(snapshot.indexOf("fileC")).isDirectory()).isFalse();
+        assertThat(snapshot.indexOf("fileD")).isNegative();
+        assertThat(snapshot.indexOf("file")).isNegative();
+    }
+
+    @Test
+    public void ordersNamesByCodePoint() throws Exception {
+        // given
+        CompactSnapshot snapshot = CompactSnapshot.of(Arrays.asList(
+                CachedFileElement.ofFile("\u00e5ngstr\u00f6m", 1),
+                CachedFileElement.ofFile("zebra", 2),
+                CachedFileElement.ofFile("Zebra", 3),
+                CachedFileElement.ofFile("\u6587\u4ef6", 4)));
+
+        // then
+        assertThat(snapshot.asFiles()).extracting(FileElementAndCache::getName)
+                .containsExactly("Zebra", "zebra", "\u00e5ngstr\u00f6m", "\u6587\u4ef6");
+        assertThat(snapshot.lastModified(snapshot.indexOf("\u6587\u4ef6"))).isEqualTo(4);
+    }
+
+    @Test
+    public void comparesNamesInOrderOfSnapshotWithoutEncodingThem() throws Exception {
+        // given
+        List<String> names = Arrays.asList("a", "ab", "\u00e5", "\u6587", "\uffff", "\ud83d\ude00", "x\ud800", "x?");
+        CompactSnapshot snapshot = CompactSnapshot.of(names.stream()
+                .map(name -> CachedFileElement.ofFile(name, 1))
+                .collect(Collectors.toList()));
+
+        // then
+        for (String name : names) {
+            int index = snapshot.indexOf(name);
+            assertThat(index).isNotNegative();
+            assertThat(snapshot.compareName(index, name)).isZero();
+        }
+        assertThat(snapshot.size()).isEqualTo(7);
+        for (int i = 1; i < snapshot.size(); i++) {
+            assertThat(CompactSnapshot.compare(snapshot.getName(i - 1), snapshot.getName(i))).isNegative();
+            assertThat(snapshot.compareName(i - 1, snapshot.getName(i))).isNegative();
+            assertThat(snapshot.compareName(i, snapshot.getName(i - 1))).isPositive();
+        }
+        assertThat(snapshot.compareName(0, "")).isPositive();
+        assertThat(snapshot.compareName(0, "aa")).isNegative();
+    }
+
+    @Test
+    public void keepsFirstOfFilesWithSameName() throws Exception {
+        // when
+        CompactSnapshot snapshot = CompactSnapshot.of(Arrays.asList(
+                CachedFileElement.ofFile("fileA", 1),
+                CachedFileElement.ofFile("fileA", 2)));
+
+        // then
+        assertThat(snapshot.size()).isEqualTo(1);
+        assertThat(snapshot.lastModified(0)).isEqualTo(1);
+    }
+
+    @Test
+    public void mergesRetainedFilesWithGivenFiles() throws Exception {
+        // given
+        CompactSnapshot snapshot = CompactSnapshot.of(Arrays.asList(
+                CachedFileElement.ofFile("fileA", 1),
+                CachedFileElement.ofDir("dirB", 2),
+                CachedFileElement.ofFile("fileC", 3)));
+        BitSet retained = new BitSet();
+        retained.set(snapshot.indexOf("dirB"));
+        retained.set(snapshot.indexOf("fileC"));
+
+        // when
+        CompactSnapshot merged = snapshot.merge(retained, Arrays.asList(
+                CachedFileElement.ofFile("fileC", 4),
+                CachedFileElement.ofFile("fileD", 5)));
+
+        // then
+        assertThat(merged.asFiles()).extracting(FileElementAndCache::getName)
+                .containsExactly("dirB", "fileC", "fileD");
+        assertThat(merged.get(0).isDirectory()).isTrue();
+        assertThat(merged.lastModified(merged.indexOf("fileC"))).isEqualTo(4);
+        assertThat(merged.lastModified(merged.indexOf("fileD"))).isEqualTo(5);
+        assertThat(merged.get(merged.indexOf("fileD")).isDirectory()).isFalse();
+    }
+
+    @Test
+    public void emptySnapshotHasNoFiles() throws Exception {
+        assertThat(CompactSnapshot.EMPTY.isEmpty()).isTrue();
+        assertThat(CompactSnapshot.EMPTY.indexOf("fileA")).isNegative();
+        assertThat(CompactSnapshot.EMPTY.asFiles()).isEmpty();
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.drapostolos.rdp4j;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+public class DirectoryDiffTest {
+
+    private DirectoryDiff diff = new DirectoryDiff();
+
+    /*
+     * input argument is in the form: "file-name/lastModified"
+     */
+    private Map<String, FileElementAndCache> listing(String... files) {
+        Map<String, FileElementAndCache> result = new LinkedHashMap<>();
+        for (String nameAndTime : files) {
+            String[] t = nameAndTime.split("/");
+            CachedFileElement file = CachedFileElement.ofFile(t[0], Long.parseLong(t[1]));
+            result.put(file.getName(), new FileElementAndCache(file, file));
+        }
+        return result;
+    }
+
+    private List<String> names(List<FileElementAndCache> files) {
+        return files.stream().map(FileElementAndCache::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void detectsAddedRemovedAndModifiedFiles() throws Exception {
+        // when
+        diff.compute(listing("a/1", "b/1", "c/1"), listing("a/1", "b/2", "d/1"));
+
+        // then
+        assertThat(names(diff.getAdded())).containsExactly("d");
+        assertThat(names(diff.getRemoved())).containsExactly("c");
+        assertThat(names(diff.getModified())).containsExactly("b");
+        assertThat(diff.hasDiff()).isTrue();
+    }
+
+    @Test
+    public void reportsNoDiffForEqualListings() throws Exception {
+        // when
+        diff.compute(listing("a/1", "b/1"), listing("a/1", "b/1"));
+
+        // then
+        assertThat(diff.getAdded()).isEmpty();
+        assertThat(diff.getRemoved()).isEmpty();
+        assertThat(diff.getModified()).isEmpty();
+        assertThat(diff.hasDiff()).isFalse();
+    }
+
+    @Test
+    public void clearsResultOfPreviousComputation() throws Exception {
+        // given
+        diff.compute(listing(), listing("a/1"));
+
+        // when
+        diff.compute(listing("a/1"), listing("a/1"));
+
+        // then
+        assertThat(diff.hasDiff()).isFalse();
+    }
+
+    @Test
+    public void detectsRemovedFilesWhenCurrentListingIsEmpty() throws Exception {
+        // when
+        diff.compute(listing("a/1", "b/1"), listing());
+
+        // then
+        assertThat(names(diff.getRemoved())).containsExactly("a", "b");
+        assertThat(diff.getAdded()).isEmpty();
+    }
+
+    @Test
+    public void mergesSortedListingWithSnapshot() throws Exception {
+        // given
+        CompactSnapshot previous = snapshot(listing("a/1", "b/1", "c/1", "e/1"));
+
+        // when
+        diff.start(previous, true);
+        listing("b/2", "c/1", "d/1", "f/1").values().forEach(diff::visit);
+        diff.finish();
+
+        // then
+        assertThat(diff.isListingFoundUnsorted()).isFalse();
+        assertThat(names(diff.getAdded())).containsExactly("d", "f");
+        assertThat(names(diff.getRemoved())).containsExactly("a", "e");
+        assertThat(names(diff.getModified())).containsExactly("b");
+    }
+
+    @Test
+    public void looksUpRestOfListingWronglyDeclaredSorted() throws Exception {
+        // given
+        CompactSnapshot previous = snapshot(listing("a/1", "b/1", "d/1"));
+
+        // when
+        diff.start(previous, true);
+        listing("b/1", "e/1", "a/2", "c/1").values().forEach(diff::visit);
+        diff.visit(file("e/2"));
+        diff.finish();
+
+        // then
+        assertThat(diff.isListingFoundUnsorted()).isTrue();
+        assertThat(names(diff.getAdded())).containsExactly("e", "c");
+        assertThat(names(diff.getRemoved())).containsExactly("d");
+        assertThat(names(diff.getModified())).containsExactly("a");
+    }
+
+    @Test
+    public void leavesOutNameRepeatedInListingDeclaredSorted() throws Exception {
+        // given
+        diff.start(snapshot(listing("a/1")), true);
+
+        // when
+        boolean[] visited = { diff.visit(file("a/1")), diff.visit(file("a/2")), diff.visit(file("b/1")) };
+        diff.finish();
+
+        // then
+        assertThat(visited).containsExactly(true, false, true);
+        assertThat(names(diff.getAdded())).containsExactly("b");
+        assertThat(diff.getModified()).isEmpty();
+    }
+
+    @Test
+    public void detectsChangesAgainstSnapshotWhileVisiting() throws Exception {
+        // when
+        diff.start(snapshot(listing("a/1", "b/1", "c/1")), false);
+        listing("d/1", "b/2", "a/1").values().forEach(diff::visit);
+        diff.finish();
+
+        // then
+        assertThat(names(diff.getAdded())).containsExactly("d");
+        assertThat(names(diff.getRemoved())).containsExactly("c");
+        assertThat(names(diff.getModified())).containsExactly("b");
+        assertThat(diff.toSnapshot().asFiles()).extracting(FileElementAndCache::getName)
+                .containsExactly("a", "b", "d");
+        assertThat(diff.toSnapshot().lastModified(1)).isEqualTo(2);
+    }
+
+    @Test
+    public void leavesOutVisitedFilesWithSameNameAsFileVisitedBefore() throws Exception {
+        // given
+        diff.start(snapshot(listing("a/1")), false);
+
+        // when
+        boolean[] visited = {
+                diff.visit(file("a/2")), diff.visit(file("a/3")), diff.visit(file("b/1")), diff.visit(file("b/2")) };
+        diff.finish();
+
+        // then
+        assertThat(visited).containsExactly(true, false, true, false);
+        assertThat(names(diff.getAdded())).containsExactly("b");
+        assertThat(names(diff.getModified())).containsExactly("a");
+        assertThat(diff.getRemoved()).isEmpty();
+    }
+
+    private FileElementAndCache file(String nameAndTime) {
+        return listing(nameAndTime).values().iterator().next();
+    }
+
+    private CompactSnapshot snapshot(Map<String, FileElementAndCache> listing) {
+        return CompactSnapshot.of(listing.values().stream()
+                .map(FileElementAndCache::getCachedFileElement)
+                .collect(Collectors.toList()));
+    }
+}
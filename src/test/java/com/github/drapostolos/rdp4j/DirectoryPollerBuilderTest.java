@@ -30,6 +30,36 @@ public class DirectoryPollerBuilderTest {
         builder.addPolledDirectory(Mockito.mock(PolledDirectory.class), previousState);
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDirectoryPollingInterval() throws Exception {
+        builder.addPolledDirectory(Mockito.mock(PolledDirectory.class), -1, TimeUnit.SECONDS, 0);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullDirectoryPollingIntervalTimeUnit() throws Exception {
+        builder.addPolledDirectory(Mockito.mock(PolledDirectory.class), 1, null, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeMaxAdaptivePollingInterval() throws Exception {
+        builder.enableAdaptivePollingInterval(-1, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void nullPollingThreadPool() throws Exception {
+        builder.enableParallelPollingOfDirectories(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void pollingThreadPoolWithoutThreads() throws Exception {
+        new PollingThreadPool(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fileAttributeLookupsWithoutThreads() throws Exception {
+        builder.enableParallelFileAttributeLookups(0);
+    }
+
     @Test(expected = NullPointerException.class)
     public void nullFileFilter() throws Exception {
         builder.setDefaultFileFilter(null);
@@ -65,6 +95,16 @@ public class DirectoryPollerBuilderTest {
 		builder.enableDefaultStatePersisting(Paths.get("file.dat"), dir -> "", null);
 	}
 
+    @Test(expected = NullPointerException.class)
+    public void nullBinaryStatePersisterFile() throws Exception {
+		builder.enableBinaryStatePersisting(null, dir -> "", str -> null);
+	}
+
+    @Test(expected = IllegalArgumentException.class)
+    public void checkpointingWithoutCyclesBetweenSnapshots() throws Exception {
+		builder.enableCheckpointedStatePersisting(Paths.get("state.bin"), dir -> "", str -> null, 0, 1024);
+	}
+
     @Test(expected = NullPointerException.class)
     public void nullStatePersister() throws Exception {
 		builder.enableStatePersisting(null);
@@ -65,6 +65,28 @@ public class DirectoryPollerTest {
         DirectoryPoller.newBuilder().start();
     }
 
+    @Test
+    public void shouldExposeMetricsOfEachPolledDirectory() throws Exception {
+        // given
+        PolledDirectory directoryMock = Mockito.mock(PolledDirectory.class);
+        Mockito.when(directoryMock.listFiles()).thenReturn(new HashSet<>());
+
+        // when
+        dp = builder
+                .addPolledDirectory(directoryMock)
+                .setPollingInterval(1, TimeUnit.MILLISECONDS)
+                .addListener(new PollCycleCounter().stopPollingAfterNumOfCycles(3))
+                .start();
+        dp.awaitTermination();
+
+        // then
+        PollerMetrics metrics = dp.getMetrics();
+        assertThat(metrics.getPollCycleCount()).isPositive();
+        assertThat(metrics.getDirectoryMetrics()).containsOnlyKeys(directoryMock);
+        assertThat(metrics.getDirectoryMetrics(directoryMock).getPollCount()).isGreaterThanOrEqualTo(3);
+        assertThat(metrics.getTrackedFileCount()).isZero();
+    }
+
     @Test
     public void shouldHaveSameNumberOfActiveThreadsBeforeStartAndAfterStop() throws Exception {
         // given
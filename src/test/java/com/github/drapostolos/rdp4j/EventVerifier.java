@@ -22,6 +22,7 @@ class EventVerifier {
     protected AbstractRdp4jListener listenerMock;
     protected InOrder inOrder;
     Map<PolledDirectory, Set<CachedFileElement>> directories = new HashMap<>();
+    Map<PolledDirectory, DirectorySchedule> schedules = new HashMap<>();
     protected PolledDirectory directoryMock;
     protected DirectoryPoller directoryPollerMock;
 
@@ -96,6 +96,7 @@ public class JavaIoFileAdapterTest {
 
         //then
         assertThat(adapter.listFiles()).containsExactly(adapter);
+        Mockito.verify(file).listFiles();
     }
 
     @Test
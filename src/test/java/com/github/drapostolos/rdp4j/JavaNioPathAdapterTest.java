@@ -0,0 +1,108 @@
+package com.github.drapostolos.rdp4j;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import com.github.drapostolos.rdp4j.spi.FileElement;
+
+public class JavaNioPathAdapterTest {
+
+    private Path tempDir;
+    private JavaNioPathAdapter adapter;
+
+    @Rule
+    public ExpectedException exception = ExpectedException.none();
+
+    @Before
+    public void testFixture() throws Exception {
+        tempDir = Files.createTempDirectory("rdp4j");
+        adapter = new JavaNioPathAdapter(tempDir);
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(tempDir);
+    }
+
+    @Test
+    public void shouldThrowWhenConstructorIsGivenNullObject() throws Exception {
+        // given
+        exception.expect(NullPointerException.class);
+        exception.expectMessage("null argument not allowed!");
+
+        // when
+        new JavaNioPathAdapter(null);
+    }
+
+    @Test
+    public void canRetrieveOriginalPathObject() throws Exception {
+        assertThat(adapter.getPath()).isSameAs(tempDir);
+        assertThat(adapter.getAttributes()).isNull();
+    }
+
+    @Test
+    public void shouldListFilesWithAttributesReadWhileListing() throws Exception {
+        // given
+        Path file = Files.createFile(tempDir.resolve("fileA"));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000000));
+        Files.createDirectory(tempDir.resolve("dirB"));
+
+        // when
+        Set<FileElement> files = adapter.listFiles();
+        Files.setLastModifiedTime(file, FileTime.fromMillis(2000000));
+
+        // then
+        assertThat(files).containsOnly(
+                new JavaNioPathAdapter(file),
+                new JavaNioPathAdapter(tempDir.resolve("dirB")));
+        for (FileElement listed : files) {
+            JavaNioPathAdapter child = (JavaNioPathAdapter) listed;
+            assertThat(child.getAttributes()).isNotNull();
+            if (child.getName().equals("fileA")) {
+                assertThat(child.lastModified()).isEqualTo(1000000);
+                assertThat(child.isDirectory()).isFalse();
+            } else {
+                assertThat(child.getName()).isEqualTo("dirB");
+                assertThat(child.isDirectory()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void canLookUpAttributesOfPathNotListed() throws Exception {
+        // given
+        Files.setLastModifiedTime(tempDir, FileTime.fromMillis(3000000));
+
+        // then
+        assertThat(adapter.lastModified()).isEqualTo(3000000);
+        assertThat(adapter.isDirectory()).isTrue();
+        assertThat(adapter.getName()).isEqualTo(tempDir.getFileName().toString());
+    }
+
+    @Test
+    public void shouldThrowIoExceptionWhenListingMissingDirectory() throws Exception {
+        // given
+        exception.expect(IOException.class);
+
+        // then
+        new JavaNioPathAdapter(tempDir.resolve("missing")).listFiles();
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.github.drapostolos.rdp4j;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+public class MemoryMappedFilePersisterTest extends PersistedFileFixture {
+
+	@Test
+	public void canReadEachDirectoryLazily() throws Exception {
+		// Given
+		persister().writeData(data);
+
+		// When
+		Map<PolledDirectory, Supplier<Set<CachedFileElement>>> lazy = persister().readDataLazily();
+
+		// Then
+		Assertions.assertThat(lazy.keySet()).containsOnly(dirA, dirB);
+		Assertions.assertThat(lazy.get(dirB).get()).isEqualTo(data.get(dirB));
+		Assertions.assertThat(lazy.get(dirA).get()).isEqualTo(data.get(dirA));
+	}
+
+	@Test
+	public void canReadFileWrittenByBinaryFilePersister() throws Exception {
+		// Given
+		new BinaryFilePersister(persistedFile, this::toDir, this::toString).writeData(data);
+
+		// Then
+		Assertions.assertThat(persister().readData()).isEqualTo(data);
+	}
+
+	@Test
+	public void canRewriteFileWhileSectionsAreMapped() throws Exception {
+		// Given
+		persister().writeData(data);
+		Map<PolledDirectory, Supplier<Set<CachedFileElement>>> lazy = persister().readDataLazily();
+		lazy.get(dirA).get();
+		data.remove(dirB);
+
+		// When
+		persister().writeData(data);
+
+		// Then
+		Assertions.assertThat(persister().readData()).isEqualTo(data);
+	}
+
+	private MemoryMappedFilePersister persister() {
+		return new MemoryMappedFilePersister(persistedFile, this::toDir, this::toString);
+	}
+}
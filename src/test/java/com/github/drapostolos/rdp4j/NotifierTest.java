@@ -2,10 +2,12 @@ package com.github.drapostolos.rdp4j;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
 
@@ -30,6 +32,22 @@ public class NotifierTest {
 		Mockito.verify(notifierLogger)
 		.error(Mockito.contains("Exception thrown by client implementation"), (Throwable) Mockito.any());
 	}
+
+    @Test
+    public void shouldCountExceptionsThrownByListeners() throws Exception {
+        // given
+        InitialContentListener listener = e -> {
+            throw new RuntimeException("test");
+        };
+        ListenerNotifier notifier = new ListenerNotifier(notifierLogger, new HashSet<Rdp4jListener>(Arrays.asList(listener)));
+
+        // when
+        notifier.initialContent(null);
+        notifier.initialContent(null);
+
+        // then
+        assertThat(notifier.getListenerErrorCount()).isEqualTo(2);
+    }
 	
     @Test
     public void canCheckIfListenerIsInstanceOfSpecificListenerInterface() throws Exception {
@@ -53,6 +71,22 @@ public class NotifierTest {
 
     }
 
+    @Test
+    public void shouldOnlyCountAsyncListenerAsListenerOfTheInterfacesOfItsWrappedListener() throws Exception {
+        // given
+        DirectoryListener wrapped = Mockito.mock(DirectoryListener.class);
+        AsyncListener listener = new AsyncListener(wrapped, 10, AsyncListener.OverflowPolicy.BLOCK);
+
+        // when
+        ListenerNotifier notifier = new ListenerNotifier(notifierLogger, new HashSet<Rdp4jListener>(Arrays.asList(listener)));
+
+        // then
+        assertThat(notifier.hasListeners(DirectoryListener.class)).isTrue();
+        assertThat(notifier.hasListeners(DirectoryPollerListener.class)).isTrue();
+        assertThat(notifier.hasListeners(BatchDirectoryListener.class)).isFalse();
+        assertThat(notifier.hasListeners(IoErrorListener.class)).isFalse();
+    }
+
     @Test
     public void constructNotifierWithNoListener() throws Exception {
         // when
@@ -130,4 +164,29 @@ public class NotifierTest {
 
     }
 
+    @Test
+    public void notifyOnlyListenersStillRegisteredInRegistrationOrder() throws Exception {
+        // given
+        ListenerNotifier n = new ListenerNotifier(notifierLogger, new HashSet<Rdp4jListener>());
+        DirectoryListener l1 = Mockito.mock(DirectoryListener.class);
+        DirectoryListener l2 = Mockito.mock(DirectoryListener.class);
+        DirectoryListener l3 = Mockito.mock(DirectoryListener.class);
+        n.addListener(l1);
+        n.addListener(l2);
+        n.addListener(l3);
+        n.removeListener(l2);
+        InOrder inOrder = Mockito.inOrder(l1, l3);
+
+        // when
+        FileAddedEvent e = new FileAddedEvent(null, null, null);
+        n.fileAdded(e);
+
+        // then
+        inOrder.verify(l1).fileAdded(e);
+        inOrder.verify(l3).fileAdded(e);
+        Mockito.verifyNoInteractions(l2);
+        assertThat(n.hasListeners(DirectoryListener.class)).isTrue();
+        assertThat(n.hasListeners(IoErrorListener.class)).isFalse();
+    }
+
 }
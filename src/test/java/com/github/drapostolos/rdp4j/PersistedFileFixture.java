@@ -0,0 +1,64 @@
+package com.github.drapostolos.rdp4j;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+/*
+ * The fixture of the tests of the persisters writing a file: a persisted file in
+ * a temporary directory, and the state of two directories to write to it.
+ */
+class PersistedFileFixture {
+
+	protected Path tempDir;
+	protected Path persistedFile;
+	protected PolledDirectory dirA;
+	protected PolledDirectory dirB;
+	protected CachedFileElement fileA = CachedFileElement.ofFile("fileA", 1500000000000L);
+	protected CachedFileElement fileB = CachedFileElement.ofFile("fileB", 1500000000000L);
+	protected CachedFileElement dirC = CachedFileElement.ofDir("dirC", 1400000000000L);
+	protected Map<PolledDirectory, Set<CachedFileElement>> data = new HashMap<>();
+
+	@Before
+	public void createPersistedFileFixture() throws Exception {
+		tempDir = Files.createTempDirectory("rdp4j");
+		persistedFile = tempDir.resolve("file.bin");
+		dirA = new JavaIoFileAdapter(tempDir.resolve("dirA").toFile());
+		dirB = new JavaIoFileAdapter(tempDir.resolve("dirB").toFile());
+		data.put(dirA, new LinkedHashSet<>(Arrays.asList(fileA, dirC)));
+		data.put(dirB, new LinkedHashSet<>(Arrays.asList(fileB)));
+	}
+
+	/*
+	 * Deletes the persisted file along with any file written next to it, like
+	 * a log or a previous generation.
+	 */
+	@After
+	public void deleteTempDir() throws Exception {
+		try (Stream<Path> files = Files.walk(tempDir)) {
+			for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	protected PolledDirectory toDir(String str) {
+		return new JavaIoFileAdapter(new File(str));
+	}
+
+	protected String toString(PolledDirectory dir) {
+		return ((JavaIoFileAdapter) dir).getFile().getPath();
+	}
+}
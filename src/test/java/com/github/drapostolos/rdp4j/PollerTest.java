@@ -0,0 +1,434 @@
+package com.github.drapostolos.rdp4j;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+
+import com.github.drapostolos.rdp4j.spi.BulkAttributePolledDirectory;
+import com.github.drapostolos.rdp4j.spi.FileElement;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+import com.github.drapostolos.rdp4j.spi.StreamingPolledDirectory;
+
+public class PollerTest extends EventVerifier {
+
+    private Poller poller;
+
+    @Before
+    public void testFixture() throws Exception {
+        directoryMock = Mockito.mock(PolledDirectory.class);
+        listenerMock = Mockito.mock(AbstractRdp4jListener.class);
+        inOrder = Mockito.inOrder(listenerMock);
+        directoryPollerMock = Mockito.mock(DirectoryPoller.class);
+        Mockito.when(directoryPollerMock.getDefaultFileFilter()).thenReturn(new DefaultFileFilter());
+        directoryPollerMock.notifier = new ListenerNotifier(Mockito.mock(Logger.class),
+                new HashSet<Rdp4jListener>(Arrays.asList(listenerMock)));
+        poller = new Poller(directoryPollerMock, directoryMock, new LinkedHashSet<>());
+    }
+
+    @Test
+    public void shouldKeepPreviousListingWhenDirectoryIsUnchanged() throws Exception {
+        // given
+        Mockito.when(directoryMock.listFiles())
+                .thenReturn(list("fileA/1", "fileB/1"))
+                .thenReturn(list("fileA/1", "fileB/1"));
+        poller.call();
+        Map<String, FileElementAndCache> previous = new HashMap<>(poller.previousListedFiles);
+
+        // when
+        poller.call();
+
+        // then
+        assertThat(poller.previousListedFiles).hasSize(2);
+        previous.forEach((name, file) -> assertThat(poller.previousListedFiles.get(name)).isSameAs(file));
+    }
+
+    @Test
+    public void shouldOnlyUpdateChangedFilesInPreviousListing() throws Exception {
+        // given
+        Mockito.when(directoryMock.listFiles())
+                .thenReturn(list("fileA/1", "fileB/1", "fileC/1"))
+                .thenReturn(list("fileA/1", "fileB/2", "fileD/1"));
+        poller.call();
+        FileElementAndCache unchanged = poller.previousListedFiles.get("fileA");
+
+        // when
+        poller.call();
+
+        // then
+        assertThat(poller.previousListedFiles.keySet()).containsOnly("fileA", "fileB", "fileD");
+        assertThat(poller.previousListedFiles.get("fileA")).isSameAs(unchanged);
+        assertThat(poller.previousListedFiles.get("fileB").lastModified()).isEqualTo(2);
+        verifyEventsInOrder(
+                InitialContentEvent.class,
+                FileRemovedEvent.class,
+                FileAddedEvent.class,
+                FileModifiedEvent.class);
+    }
+
+    @Test
+    public void shouldKeepListingOrderWhenLookingUpAttributesInParallel() throws Exception {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        poller = new Poller(directoryPollerMock, directoryMock, new LinkedHashSet<>(),
+                DirectorySchedule.DEFAULT, executor);
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            names.add("file" + i + "/1");
+        }
+        Mockito.when(directoryMock.listFiles()).thenReturn(list(names.toArray(new String[0])));
+
+        // when
+        poller.call();
+        executor.shutdown();
+
+        // then
+        assertThat(poller.currentListedFiles.keySet())
+                .containsExactlyElementsOf(() -> names.stream().map(n -> n.split("/")[0]).iterator());
+    }
+
+    @Test
+    public void shouldRaiseIoErrorWhenParallelAttributeLookupFails() throws Exception {
+        // given
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        poller = new Poller(directoryPollerMock, directoryMock, new LinkedHashSet<>(),
+                DirectorySchedule.DEFAULT, executor);
+        Set<FileElement> files = list("fileA/1", "fileB/1");
+        FileElement failing = Mockito.mock(FileElement.class);
+        Mockito.when(failing.getName()).thenReturn("fileC");
+        Mockito.when(failing.lastModified()).thenThrow(new IOException("thrown from unit test!"));
+        files.add(failing);
+        Mockito.when(directoryMock.listFiles()).thenReturn(files);
+
+        // when
+        poller.call();
+        executor.shutdown();
+
+        // then
+        verifyEventsInOrder(IoErrorRaisedEvent.class);
+        Mockito.verifyNoMoreInteractions(listenerMock);
+    }
+
+    @Test
+    public void shouldUseAttributesOfBulkListingAsTheyAre() throws Exception {
+        // given
+        BulkAttributePolledDirectory bulkDirectoryMock = Mockito.mock(BulkAttributePolledDirectory.class);
+        poller = new Poller(directoryPollerMock, bulkDirectoryMock, new LinkedHashSet<>());
+        CachedFileElement fileA = CachedFileElement.ofFile("fileA", 1);
+        CachedFileElement fileB = CachedFileElement.ofDir("fileB", 1);
+        Mockito.when(bulkDirectoryMock.listCachedFiles())
+                .thenReturn(new LinkedHashSet<>(Arrays.asList(fileA)))
+                .thenReturn(new LinkedHashSet<>(Arrays.asList(fileA, fileB)));
+
+        // when
+        poller.call();
+        poller.call();
+
+        // then
+        assertThat(poller.previousListedFiles.get("fileA").getCachedFileElement()).isSameAs(fileA);
+        assertThat(poller.previousListedFiles.get("fileB").getFileElement()).isSameAs(fileB);
+        Mockito.verify(bulkDirectoryMock, Mockito.never()).listFiles();
+        verifyEventsInOrder(InitialContentEvent.class, FileAddedEvent.class);
+        Mockito.verifyNoMoreInteractions(listenerMock);
+    }
+
+    @Test
+    public void shouldNotifyBatchListenerWithAllChangesOfPollCycle() throws Exception {
+        // given
+        BatchDirectoryListener batchListenerMock = Mockito.mock(BatchDirectoryListener.class);
+        directoryPollerMock.notifier.addListener(batchListenerMock);
+        Mockito.when(directoryMock.listFiles())
+                .thenReturn(list("fileA/1", "fileB/1", "fileC/1"))
+                .thenReturn(list("fileA/1", "fileB/1", "fileC/1"))
+                .thenReturn(list("fileA/2", "fileC/1", "fileD/1", "fileE/1"));
+        ArgumentCaptor<DirectoryChangedEvent> event = ArgumentCaptor.forClass(DirectoryChangedEvent.class);
+
+        // when
+        poller.call();
+        poller.call();
+        poller.call();
+
+        // then
+        Mockito.verify(batchListenerMock).directoryChanged(event.capture());
+        assertThat(event.getValue().getPolledDirectory()).isSameAs(directoryMock);
+        assertThat(event.getValue().getAddedCachedFiles()).extracting(CachedFileElement::getName)
+                .containsExactly("fileD", "fileE");
+        assertThat(event.getValue().getRemovedFiles()).extracting(FileElement::getName)
+                .containsExactly("fileB");
+        assertThat(event.getValue().getModifiedCachedFiles()).extracting(CachedFileElement::lastModified)
+                .containsExactly(2L);
+        Mockito.verifyNoMoreInteractions(batchListenerMock);
+    }
+
+    @Test
+    public void shouldReadPreviousStateTheFirstTimeThePollerRuns() throws Exception {
+        // given
+        AtomicInteger reads = new AtomicInteger();
+        poller = new Poller(directoryPollerMock, directoryMock, () -> {
+            reads.incrementAndGet();
+            return new LinkedHashSet<>(Arrays.asList(CachedFileElement.ofFile("fileA", 1)));
+        }, DirectorySchedule.DEFAULT, null);
+        Mockito.when(directoryMock.listFiles()).thenReturn(list("fileA/2"));
+
+        // when
+        int readsBeforeFirstPoll = reads.get();
+        poller.call();
+        poller.call();
+
+        // then
+        assertThat(readsBeforeFirstPoll).isEqualTo(0);
+        assertThat(reads.get()).isEqualTo(1);
+        verifyEventsInOrder(InitialContentEvent.class, FileModifiedEvent.class);
+        Mockito.verifyNoMoreInteractions(listenerMock);
+    }
+
+    @Test
+    public void shouldStopDirectoryPollerWhenPreviousStateCannotBeRead() throws Exception {
+        // given
+        poller = new Poller(directoryPollerMock, directoryMock, () -> {
+            throw new IllegalStateException("corrupt section");
+        }, DirectorySchedule.DEFAULT, null);
+
+        // when
+        Throwable thrown = null;
+        try {
+            poller.call();
+        } catch (IllegalStateException e) {
+            thrown = e;
+        }
+
+        // then
+        assertThat(thrown).hasMessageContaining("unreadable previous state");
+        Mockito.verify(directoryPollerMock).stopAsync();
+        Mockito.verify(directoryMock, Mockito.never()).listFiles();
+        assertThat(poller.getLastListedFiles()).isEmpty();
+        Mockito.verifyNoInteractions(listenerMock);
+    }
+
+    @Test
+    public void shouldDetectChangesAgainstCompactPreviousState() throws Exception {
+        // given
+        directoryPollerMock.compactPreviousStateEnabled = true;
+        poller = new Poller(directoryPollerMock, directoryMock, new LinkedHashSet<>(Arrays.asList(
+                CachedFileElement.ofFile("fileA", 1), CachedFileElement.ofFile("fileB", 1))));
+        Mockito.when(directoryMock.listFiles())
+                .thenReturn(list("fileA/2", "fileC/1"))
+                .thenReturn(list("fileA/2", "fileC/1"));
+
+        // when
+        poller.call();
+        poller.call();
+
+        // then
+        assertThat(poller.currentListedFiles).isEmpty();
+        assertThat(poller.getLastListedFiles()).extracting(FileElementAndCache::getName)
+                .containsExactly("fileA", "fileC");
+        verifyEventsInOrder(
+                InitialContentEvent.class,
+                FileRemovedEvent.class,
+                FileAddedEvent.class,
+                FileModifiedEvent.class);
+        Mockito.verifyNoMoreInteractions(listenerMock);
+    }
+
+    @Test
+    public void shouldFilterFilesOfStreamingDirectoryAsTheyAreVisited() throws Exception {
+        // given
+        Set<FileElement> firstListing = list("fileA/1", "fileB/1");
+        Set<FileElement> secondListing = list("fileA/1", "fileB/2");
+        AtomicInteger polls = new AtomicInteger();
+        StreamingPolledDirectory streamingDirectory = visitor -> {
+            if (polls.incrementAndGet() == 3) {
+                visitor.visit(firstListing.iterator().next());
+                throw new IOException("listing failed after first page");
+            }
+            for (FileElement file : polls.get() == 1 ? firstListing : secondListing) {
+                visitor.visit(file);
+            }
+        };
+        poller = new Poller(directoryPollerMock, streamingDirectory, new LinkedHashSet<>());
+
+        // when
+        poller.call();
+        poller.call();
+        poller.call();
+
+        // then
+        assertThat(poller.previousListedFiles.keySet()).containsExactly("fileA", "fileB");
+        verifyEventsInOrder(InitialContentEvent.class, FileModifiedEvent.class, IoErrorRaisedEvent.class);
+        Mockito.verifyNoMoreInteractions(listenerMock);
+    }
+
+    @Test
+    public void shouldDetectChangesOfStreamingDirectoryWhileVisitingWithoutKeepingListing() throws Exception {
+        // given
+        directoryPollerMock.compactPreviousStateEnabled = true;
+        List<String> firstListing = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            firstListing.add("file" + i + "/1");
+        }
+        List<String> secondListing = new ArrayList<>(firstListing.subList(1, 600));
+        secondListing.set(299, "file300/2");
+        secondListing.add("fileNew/1");
+        AtomicInteger polls = new AtomicInteger();
+        StreamingPolledDirectory streamingDirectory = visitor -> {
+            try {
+                List<String> listing = polls.incrementAndGet() == 1 ? firstListing : secondListing;
+                for (FileElement file : list(listing.toArray(new String[0]))) {
+                    visitor.visit(file);
+                    if (polls.get() == 3) {
+                        throw new DirectoryPollerException();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        poller = new Poller(directoryPollerMock, streamingDirectory, new LinkedHashSet<>(),
+                DirectorySchedule.DEFAULT, executor);
+
+        // when
+        poller.call();
+        poller.call();
+        poller.call();
+        executor.shutdown();
+
+        // then
+        assertThat(poller.currentListedFiles).isEmpty();
+        assertThat(poller.getLastListedFiles()).hasSize(600);
+        ArgumentCaptor<FileRemovedEvent> removed = ArgumentCaptor.forClass(FileRemovedEvent.class);
+        ArgumentCaptor<FileAddedEvent> added = ArgumentCaptor.forClass(FileAddedEvent.class);
+        ArgumentCaptor<FileModifiedEvent> modified = ArgumentCaptor.forClass(FileModifiedEvent.class);
+        inOrder.verify(listenerMock).initialContent(Mockito.any());
+        inOrder.verify(listenerMock).fileRemoved(removed.capture());
+        inOrder.verify(listenerMock).fileAdded(added.capture());
+        inOrder.verify(listenerMock).fileModified(modified.capture());
+        Mockito.verifyNoMoreInteractions(listenerMock);
+        assertThat(removed.getValue().getFileElement().getName()).isEqualTo("file0");
+        assertThat(added.getValue().getFileElement().getName()).isEqualTo("fileNew");
+        assertThat(modified.getValue().getFileElement().getName()).isEqualTo("file300");
+    }
+
+    @Test
+    public void shouldDetectChangesOfSortedListingAndOfListingWronglyDeclaredSorted() throws Exception {
+        // given
+        directoryPollerMock.compactPreviousStateEnabled = true;
+        poller = new Poller(directoryPollerMock, directoryMock, new LinkedHashSet<>());
+        Mockito.when(directoryMock.isListingSorted()).thenReturn(true);
+        Mockito.when(directoryMock.listFiles())
+                .thenReturn(list("fileA/1", "fileB/1"))
+                .thenReturn(list("fileB/1", "fileC/1"))
+                .thenReturn(list("fileD/1", "fileC/2", "fileB/1"));
+
+        // when
+        poller.call();
+        poller.call();
+        poller.call();
+
+        // then
+        assertThat(poller.getLastListedFiles()).extracting(FileElementAndCache::getName)
+                .containsExactly("fileB", "fileC", "fileD");
+        verifyEventsInOrder(
+                InitialContentEvent.class,
+                FileRemovedEvent.class,
+                FileAddedEvent.class,
+                FileAddedEvent.class,
+                FileModifiedEvent.class);
+        Mockito.verifyNoMoreInteractions(listenerMock);
+    }
+
+    @Test
+    public void shouldSkipListingWhileChangeTokenIsUnchanged() throws Exception {
+        // given
+        Mockito.when(directoryMock.getChangeToken()).thenReturn("v1", "v1", "v2", "v2");
+        Mockito.when(directoryMock.listFiles())
+                .thenReturn(list("fileA/1"))
+                .thenReturn(list("fileA/1", "fileB/1"));
+
+        // when
+        poller.call();
+        poller.call();
+        poller.call();
+        poller.call();
+
+        // then
+        Mockito.verify(directoryMock, Mockito.times(2)).listFiles();
+        verifyEventsInOrder(InitialContentEvent.class, FileAddedEvent.class);
+        Mockito.verifyNoMoreInteractions(listenerMock);
+    }
+
+    @Test
+    public void shouldListAgainAfterIoErrorEvenIfChangeTokenIsUnchanged() throws Exception {
+        // given
+        Mockito.when(directoryMock.getChangeToken()).thenReturn("v1", "v2", "v2");
+        Mockito.when(directoryMock.listFiles())
+                .thenReturn(list("fileA/1"))
+                .thenThrow(new IOException())
+                .thenReturn(list("fileA/1"));
+
+        // when
+        poller.call();
+        poller.call();
+        poller.call();
+
+        // then
+        Mockito.verify(directoryMock, Mockito.times(3)).listFiles();
+        verifyEventsInOrder(InitialContentEvent.class, IoErrorRaisedEvent.class, IoErrorCeasedEvent.class);
+        Mockito.verifyNoMoreInteractions(listenerMock);
+    }
+
+    @Test
+    public void shouldRecordMetricsOfEachPoll() throws Exception {
+        // given
+        Mockito.when(directoryPollerMock.getDefaultFileFilter()).thenReturn(new RegexFileFilter("file[A-Z]"));
+        poller = new Poller(directoryPollerMock, directoryMock, new LinkedHashSet<>());
+        Mockito.when(directoryMock.getChangeToken()).thenReturn("v1", "v2", "v2", "v3");
+        Mockito.when(directoryMock.listFiles())
+                .thenReturn(list("fileA/1", "fileB/1", "file.tmp/1"))
+                .thenReturn(list("fileA/2", "fileC/1", "file.tmp/1"))
+                .thenThrow(new IOException());
+
+        // when
+        poller.call();
+        poller.call();
+        poller.call();
+        poller.call();
+
+        // then
+        DirectoryMetrics metrics = poller.getMetrics();
+        assertThat(metrics.getPolledDirectory()).isSameAs(directoryMock);
+        assertThat(metrics.getPollCount()).isEqualTo(4);
+        assertThat(metrics.getSkippedListingCount()).isEqualTo(1);
+        assertThat(metrics.getListingCount()).isEqualTo(2);
+        assertThat(metrics.getLastEntryCount()).isEqualTo(3);
+        assertThat(metrics.getLastFilteredOutCount()).isEqualTo(1);
+        assertThat(metrics.getTrackedFileCount()).isEqualTo(2);
+        assertThat(metrics.getLastAddedCount()).isZero();
+        assertThat(metrics.getTotalAddedCount()).isEqualTo(1);
+        assertThat(metrics.getTotalRemovedCount()).isEqualTo(1);
+        assertThat(metrics.getTotalModifiedCount()).isEqualTo(1);
+        assertThat(metrics.getIoErrorCount()).isEqualTo(1);
+        assertThat(metrics.isIoErrorActive()).isTrue();
+        assertThat(metrics.getTotalPollNanos()).isGreaterThanOrEqualTo(metrics.getMaxPollNanos());
+        assertThat(metrics.getMaxPollNanos()).isPositive();
+    }
+}
@@ -0,0 +1,177 @@
+package com.github.drapostolos.rdp4j;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.github.drapostolos.rdp4j.spi.FileElement;
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
+public class RecursivePolledDirectoryTest {
+
+    private Path tempDir;
+
+    @Before
+    public void testFixture() throws Exception {
+        tempDir = Files.createTempDirectory("rdp4j");
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void shouldListWholeTreeWithRelativePaths() throws Exception {
+        // given
+        Files.createFile(tempDir.resolve("fileA"));
+        Files.createDirectories(tempDir.resolve("dirB").resolve("dirC"));
+        Files.createFile(tempDir.resolve("dirB").resolve("fileD"));
+        Files.createFile(tempDir.resolve("dirB").resolve("dirC").resolve("fileE"));
+        RecursivePolledDirectory directory = new RecursivePolledDirectory(new JavaIoFileAdapter(tempDir.toFile()));
+
+        // when
+        Set<FileElement> files = directory.listFiles();
+
+        // then
+        assertThat(names(files)).containsOnly(
+                "fileA", "dirB", "dirB/dirC", "dirB/fileD", "dirB/dirC/fileE");
+    }
+
+    @Test
+    public void shouldNotDescendIntoDirectoryListedBeforeThroughLink() throws Exception {
+        // given
+        Path dirA = Files.createDirectory(tempDir.resolve("a"));
+        Files.createSymbolicLink(dirA.resolve("loop"), dirA.getParent());
+        Files.createFile(dirA.resolve("fileB"));
+
+        // when
+        Set<FileElement> overIo = new RecursivePolledDirectory(new JavaIoFileAdapter(tempDir.toFile())).listFiles();
+        Set<FileElement> overNio = new RecursivePolledDirectory(new JavaNioPathAdapter(tempDir))
+                .enableIncrementalRescans().listFiles();
+
+        // then
+        assertThat(names(overIo)).containsOnly("a", "a/loop", "a/fileB");
+        assertThat(names(overNio)).containsOnly("a", "a/loop", "a/fileB");
+    }
+
+    @Test
+    public void shouldOnlyListSubdirectoriesWithChangedLastModifiedTime() throws Exception {
+        // given
+        PolledDirectory root = Mockito.mock(PolledDirectory.class);
+        PolledDirectory subdirectory = Mockito.mock(PolledDirectory.class,
+                Mockito.withSettings().extraInterfaces(FileElement.class));
+        FileElement subdirectoryElement = (FileElement) subdirectory;
+        Mockito.when(subdirectoryElement.getName()).thenReturn("dirA");
+        Mockito.when(subdirectoryElement.isDirectory()).thenReturn(true);
+        Mockito.when(subdirectoryElement.lastModified()).thenReturn(1L, 1L, 2L);
+        Mockito.when(root.listFiles()).thenReturn(set(subdirectoryElement));
+        Mockito.when(subdirectory.listFiles())
+                .thenReturn(set(new StubbedFileElement("fileB", 1)))
+                .thenReturn(set(new StubbedFileElement("fileC", 1)));
+        RecursivePolledDirectory directory = new RecursivePolledDirectory(root).enableIncrementalRescans();
+
+        // when
+        Set<FileElement> first = directory.listFiles();
+        Set<FileElement> second = directory.listFiles();
+        Set<FileElement> third = directory.listFiles();
+
+        // then
+        assertThat(names(first)).containsExactly("dirA", "dirA/fileB");
+        assertThat(names(second)).containsExactly("dirA", "dirA/fileB");
+        assertThat(names(third)).containsExactly("dirA", "dirA/fileC");
+        Mockito.verify(root, Mockito.times(3)).listFiles();
+        Mockito.verify(subdirectory, Mockito.times(2)).listFiles();
+    }
+
+    @Test
+    public void shouldListNestedDirectoryChangedBelowUnchangedDirectory() throws Exception {
+        // given
+        Path nestedDir = Files.createDirectories(tempDir.resolve("dirA").resolve("dirB"));
+        RecursivePolledDirectory directory = new RecursivePolledDirectory(new JavaNioPathAdapter(tempDir))
+                .enableIncrementalRescans();
+        Set<FileElement> first = directory.listFiles();
+        FileTime lastModified = Files.getLastModifiedTime(nestedDir);
+        Files.createFile(nestedDir.resolve("fileC"));
+        Files.setLastModifiedTime(nestedDir, FileTime.fromMillis(lastModified.toMillis() + 10_000));
+
+        // when
+        Set<FileElement> second = directory.listFiles();
+
+        // then
+        assertThat(names(first)).containsOnly("dirA", "dirA/dirB");
+        assertThat(names(second)).containsOnly("dirA", "dirA/dirB", "dirA/dirB/fileC");
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenKeptDirectoryCannotBeStatedAgain() throws Exception {
+        // given
+        PolledDirectory root = Mockito.mock(PolledDirectory.class);
+        PolledDirectory subdirectory = Mockito.mock(PolledDirectory.class,
+                Mockito.withSettings().extraInterfaces(FileElement.class));
+        FileElement subdirectoryElement = (FileElement) subdirectory;
+        Mockito.when(subdirectoryElement.getName()).thenReturn("dirA");
+        Mockito.when(subdirectoryElement.isDirectory()).thenReturn(true);
+        Mockito.when(subdirectoryElement.lastModified()).thenReturn(1L);
+        Mockito.when(root.listFiles()).thenReturn(set(subdirectoryElement));
+        Mockito.when(subdirectory.listFiles()).thenReturn(set(CachedFileElement.of("dirB", 1, true)));
+        PolledDirectory nestedDirectory = Mockito.mock(PolledDirectory.class);
+        Mockito.when(nestedDirectory.listFiles()).thenReturn(set());
+        RecursivePolledDirectory directory = new RecursivePolledDirectory(root,
+                file -> file == subdirectoryElement ? subdirectory : nestedDirectory).enableIncrementalRescans();
+        directory.listFiles();
+
+        // when
+        directory.listFiles();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldThrowWhenListedDirectoryIsNotPolledDirectory() throws Exception {
+        // given
+        PolledDirectory root = Mockito.mock(PolledDirectory.class);
+        FileElement subdirectory = Mockito.mock(FileElement.class);
+        Mockito.when(subdirectory.getName()).thenReturn("dirA");
+        Mockito.when(subdirectory.isDirectory()).thenReturn(true);
+        Mockito.when(root.listFiles()).thenReturn(set(subdirectory));
+
+        // when
+        new RecursivePolledDirectory(root).listFiles();
+    }
+
+    @Test
+    public void shouldBeEqualWhenRootIsEqual() throws Exception {
+        File dir = tempDir.toFile();
+        assertThat(new RecursivePolledDirectory(new JavaIoFileAdapter(dir)))
+                .isEqualTo(new RecursivePolledDirectory(new JavaIoFileAdapter(dir)))
+                .isNotEqualTo(new JavaIoFileAdapter(dir));
+    }
+
+    private static Set<FileElement> set(FileElement... files) {
+        Set<FileElement> result = new LinkedHashSet<>();
+        for (FileElement file : files) {
+            result.add(file);
+        }
+        return result;
+    }
+
+    private static Set<String> names(Set<FileElement> files) {
+        return files.stream().map(FileElement::getName).collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+}
@@ -7,10 +7,14 @@ import static org.mockito.ArgumentMatchers.contains;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
@@ -38,6 +42,8 @@ public class ScheduledRunnableTest extends EventVerifier {
         Mockito.when(directoryPollerMock.getDefaultFileFilter()).thenReturn(new DefaultFileFilter());
         directories.put(directoryMock, new HashSet<>());
         directoryPollerMock.directories = directories;
+        directoryPollerMock.schedules = schedules;
+        directoryPollerMock.lazyPreviousStates = new HashMap<>();
         directoryPollerMock.notifier = new ListenerNotifier(notifierLogger, new HashSet<Rdp4jListener>(Arrays.asList(listenerMock)));
         pollerTask = new ScheduledRunnable(directoryPollerMock);
     }
@@ -195,6 +201,197 @@ public class ScheduledRunnableTest extends EventVerifier {
         Mockito.verifyNoMoreInteractions(listenerMock);
     }
 
+    @Test
+    public void pollDirectoryWithOwnIntervalOnItsOwnDelay() throws Exception {
+        // given
+        Mockito.when(directoryPollerMock.getPollingIntervalInMillis()).thenReturn(100_000L);
+        Mockito.when(directoryMock.listFiles()).thenReturn(list("fileA/1"));
+        PolledDirectory directoryMock2 = Mockito.mock(PolledDirectory.class);
+        CountDownLatch threePolls = new CountDownLatch(3);
+        Mockito.when(directoryMock2.listFiles()).then(invocation -> {
+            threePolls.countDown();
+            return list("FileA/1");
+        });
+        pollerTask.addDirectory(directoryMock2, new DirectorySchedule(10, 0));
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+
+        // when
+        executeNumberOfPollCycles(1);
+        pollerTask.startSelfScheduledPolling(scheduler);
+        boolean isPolledThreeTimes = threePolls.await(5, TimeUnit.SECONDS);
+        pollerTask.shutdown();
+        scheduler.shutdownNow();
+        pollerTask.awaitTermination();
+
+        // then
+        assertThat(isPolledThreeTimes).isTrue();
+        Mockito.verify(directoryMock, Mockito.times(1)).listFiles();
+    }
+
+    @Test
+    public void backOffOnIdleDirectoryUpToMaxInterval() throws Exception {
+        // given
+        Mockito.when(directoryPollerMock.getPollingIntervalInMillis()).thenReturn(100L);
+        directoryPollerMock.adaptivePollingEnabled = true;
+        directoryPollerMock.maxPollingIntervalInMillis = 400;
+        pollerTask = new ScheduledRunnable(directoryPollerMock);
+        Mockito.when(directoryMock.listFiles()).then(invocation -> list("fileA/1"));
+
+        // when
+        executeNumberOfPollCycles(12);
+
+        // then
+        Mockito.verify(directoryMock, Mockito.times(5)).listFiles(); // poll-cycle 1, 2, 4, 8 and 12
+    }
+
+    @Test
+    public void speedUpWhenIdleDirectoryIsModified() throws Exception {
+        // given
+        Mockito.when(directoryPollerMock.getPollingIntervalInMillis()).thenReturn(100L);
+        directoryPollerMock.adaptivePollingEnabled = true;
+        directoryPollerMock.maxPollingIntervalInMillis = 400;
+        pollerTask = new ScheduledRunnable(directoryPollerMock);
+        Mockito.when(directoryMock.listFiles())
+                .thenReturn(list("fileA/1"))
+                .thenReturn(list("fileA/1"))
+                .then(invocation -> list("fileA/1", "fileB/1"));
+
+        // when
+        executeNumberOfPollCycles(8);
+
+        // then
+        Mockito.verify(directoryMock, Mockito.times(5)).listFiles(); // poll-cycle 1, 2, 4, 5 and 7
+    }
+
+    @Test
+    public void pollDirectoriesWithSharedThreadPoolWithoutShuttingItDown() throws Exception {
+        // given
+        PollingThreadPool pool = new PollingThreadPool(2);
+        directoryPollerMock.pollingThreadPool = pool;
+        pollerTask = new ScheduledRunnable(directoryPollerMock);
+        List<String> threadNames = new ArrayList<>();
+        Mockito.when(directoryMock.listFiles()).then(invocation -> {
+            threadNames.add(Thread.currentThread().getName());
+            return list();
+        });
+
+        // when
+        executeNumberOfPollCycles(1);
+        pollerTask.shutdown();
+        pollerTask.awaitTermination();
+
+        // then
+        assertThat(threadNames).hasSize(1);
+        assertThat(threadNames.get(0)).startsWith("PollingThreadPool-");
+        assertThat(pool.isShutdown()).isFalse();
+        assertThat(pool.getQueueDepth()).isZero();
+        pool.shutdown();
+    }
+
+    @Test
+    public void pollWithVirtualThreadsOrFallBackToPlatformThreads() throws Exception {
+        // given
+        directoryPollerMock.virtualThreadPollingEnabled = true;
+        pollerTask = new ScheduledRunnable(directoryPollerMock);
+        Mockito.when(directoryMock.listFiles())
+                .thenReturn(list("fileA/1"))
+                .thenReturn(list("fileA/1", "fileB/1"));
+
+        // when
+        executeNumberOfPollCycles(2);
+
+        // then
+        verifyEventsInOrder(
+                // poll-cycle#1
+                BeforePollingCycleEvent.class,
+                InitialContentEvent.class,
+                AfterPollingCycleEvent.class,
+
+                // poll-cycle#2
+                BeforePollingCycleEvent.class,
+                FileAddedEvent.class,
+                AfterPollingCycleEvent.class);
+        Mockito.verifyNoMoreInteractions(listenerMock);
+    }
+
+    @Test
+    public void lookUpFileAttributesInParallelWithBoundedPool() throws Exception {
+        // given
+        directoryPollerMock.fileAttributeLookupParallelism = 2;
+        pollerTask = new ScheduledRunnable(directoryPollerMock);
+        Mockito.when(directoryMock.listFiles())
+                .thenReturn(list("fileA/1", "fileB/1", "fileC/1"))
+                .thenReturn(list("fileA/2", "fileC/1", "fileD/1", "fileE/1"));
+
+        // when
+        executeNumberOfPollCycles(2);
+
+        // then
+        verifyEventsInOrder(
+                // poll-cycle#1
+                BeforePollingCycleEvent.class,
+                InitialContentEvent.class,
+                AfterPollingCycleEvent.class,
+
+                // poll-cycle#2
+                BeforePollingCycleEvent.class,
+                FileRemovedEvent.class,
+                FileAddedEvent.class,
+                FileAddedEvent.class,
+                FileModifiedEvent.class,
+                AfterPollingCycleEvent.class);
+        Mockito.verifyNoMoreInteractions(listenerMock);
+    }
+
+    @Test
+    public void pollDirectoriesDueAtSameTimeWithHighestPriorityFirst() throws Exception {
+        // given
+        List<String> pollOrder = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch threePolls = new CountDownLatch(3);
+        Mockito.when(directoryMock.listFiles()).then(invocation -> {
+            pollOrder.add("default");
+            threePolls.countDown();
+            return list();
+        });
+        PolledDirectory low = Mockito.mock(PolledDirectory.class);
+        Mockito.when(low.listFiles()).then(invocation -> {
+            pollOrder.add("low");
+            threePolls.countDown();
+            return list();
+        });
+        PolledDirectory high = Mockito.mock(PolledDirectory.class);
+        Mockito.when(high.listFiles()).then(invocation -> {
+            pollOrder.add("high");
+            threePolls.countDown();
+            return list();
+        });
+        pollerTask.addDirectory(low, new DirectorySchedule(100_000, -1));
+        pollerTask.addDirectory(high, new DirectorySchedule(100_000, 5));
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // when
+        pollerTask.startSelfScheduledPolling(scheduler);
+        release.countDown();
+        executeNumberOfPollCycles(1);
+        boolean isEachPolled = threePolls.await(5, TimeUnit.SECONDS);
+        pollerTask.shutdown();
+        scheduler.shutdownNow();
+        pollerTask.awaitTermination();
+
+        // then
+        assertThat(isEachPolled).isTrue();
+        assertThat(pollOrder).containsExactlyInAnyOrder("high", "default", "low");
+        assertThat(pollOrder.indexOf("high")).isLessThan(pollOrder.indexOf("low"));
+    }
+
     @Test
     public void oneSuccesfulPoll() throws Exception {
         // given 
@@ -4,12 +4,18 @@ import java.io.FileNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import org.assertj.core.api.Assertions;
 import org.junit.After;
 import org.junit.Test;
 
+import com.github.drapostolos.rdp4j.spi.PolledDirectory;
+
 public class SerializeToFilePersisterTest {
 	
 	private Path missingFile = Paths.get("missing-directory", "file.dat").toAbsolutePath();
@@ -18,6 +24,7 @@ public class SerializeToFilePersisterTest {
 	public void teardown() throws Exception {
 		System.out.println("AFTER");
 		Files.deleteIfExists(missingFile);
+		Files.deleteIfExists(AtomicFileWriter.previousGenerationOf(missingFile));
 		System.out.println("exists: " + Files.exists(missingFile));
 		Files.deleteIfExists(missingFile.getParent());
 	}
@@ -72,4 +79,63 @@ public class SerializeToFilePersisterTest {
 		// Then
 		Assertions.assertThat(missingFile).exists();
 	}
+
+	@Test
+	public void crashSafeWriteKeepsPreviousGeneration() throws Exception {
+		// Given
+		SerializeToFilePersister persister = crashSafePersister();
+		persister.writeData(state("fileA"));
+
+		// When
+		persister.writeData(state("fileB"));
+		persister.awaitPendingWrite();
+
+		// Then
+		Assertions.assertThat(AtomicFileWriter.previousGenerationOf(missingFile)).exists();
+		Assertions.assertThat(missingFile.resolveSibling("file.dat.tmp")).doesNotExist();
+		Assertions.assertThat(crashSafePersister().readData()).isEqualTo(state("fileB"));
+	}
+
+	@Test
+	public void crashSafeReadFallsBackToPreviousGenerationWhenFileIsTruncated() throws Exception {
+		// Given
+		SerializeToFilePersister persister = crashSafePersister();
+		persister.writeData(state("fileA"));
+		persister.writeData(state("fileB"));
+		persister.awaitPendingWrite();
+		byte[] content = Files.readAllBytes(missingFile);
+		Files.write(missingFile, Arrays.copyOf(content, content.length / 2));
+
+		// When
+		Map<PolledDirectory, Set<CachedFileElement>> data = crashSafePersister().readData();
+
+		// Then
+		Assertions.assertThat(data).isEqualTo(state("fileA"));
+	}
+
+	@Test
+	public void crashSafeReadWaitsForWriteOfOtherPersisterOfSameFile() throws Exception {
+		// Given
+		crashSafePersister().writeData(state("fileA"));
+		crashSafePersister().writeData(state("fileB"));
+
+		// When
+		Map<PolledDirectory, Set<CachedFileElement>> data = crashSafePersister().readData();
+
+		// Then
+		Assertions.assertThat(data).isEqualTo(state("fileB"));
+		Assertions.assertThat(missingFile.resolveSibling("file.dat.prev.tmp")).doesNotExist();
+	}
+
+	private SerializeToFilePersister crashSafePersister() {
+		return new SerializeToFilePersister(missingFile, str -> new JavaIoFileAdapter(new java.io.File(str)),
+				dir -> ((JavaIoFileAdapter) dir).getFile().getPath(), true);
+	}
+
+	private Map<PolledDirectory, Set<CachedFileElement>> state(String fileName) {
+		Map<PolledDirectory, Set<CachedFileElement>> state = new HashMap<>();
+		state.put(new JavaIoFileAdapter(new java.io.File("dirA")),
+				new HashSet<>(Arrays.asList(CachedFileElement.ofFile(fileName, 1500000000000L))));
+		return state;
+	}
 }